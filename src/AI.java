@@ -1,6 +1,8 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * The A.I. Class represents the A.I. player
@@ -14,14 +16,109 @@ public class AI extends Player {
     private int maxDepth;
     private int botDifficulty;
     private boolean debug;
-    //The last position of a skip move if the bot can make an additional move.
-    //If they are both -1, the bot cannot make an additional move.
-    private int jumpCol = -1;
-    private int jumpRow = -1;
     //time limit for searching.
     //NOTE: THE TIME LIMIT IS HIGHLY VARIABLE BECAUSE OF DIFFERENT STUFF.
     private long timeLimit = 5000; //milliseconds
-    private HashMap<Board, ITState> transTable;
+    //Game clock. If there is one, each move gets its time from the clock instead of timeLimit.
+    private TimeControl timeControl;
+    //On a clock, a move that stays the best for this many iterations is played sooner.
+    private static final int STABLE_ITERATIONS = 4;
+    //On a clock, a score that drops by more than this from one iteration to the next gets more time. A man is 5.
+    private static final int SCORE_DROP = 5;
+    //On a clock, if every other move is this much worse than the best one from this depth on, the move is easy.
+    private static final int EASY_MOVE_MARGIN = 15;
+    private static final int EASY_MOVE_DEPTH = 6;
+    //Transposition table. It is kept from one move to the next, and made on the first move that needs it.
+    private static final int TRANS_TABLE_MB = 64;
+    private TranspositionTable transTable;
+    //Number of threads used by iterative deepening. Every thread after the first runs a helper search.
+    private int threads = 1;
+    //Helper searchers, one for each extra thread. Each has its own move lists and shares our transposition table.
+    private AI[] helpers = new AI[0];
+    //Set to stop a helper. A stopped helper stores nothing, because the scores it has left are unfinished.
+    //The main search sets it when it runs out of time, and unwinds the same way.
+    private volatile boolean stopSearch;
+    //Time the search has to stop by, in milliseconds. The search checks it every POLL_NODES nodes.
+    private volatile long deadline = Long.MAX_VALUE;
+    //Time the current search started, and the time it aims to take, in milliseconds.
+    private volatile long searchStart;
+    private volatile long targetTime;
+    private static final int POLL_NODES = 1024;
+    //Fork/join pool for the fixed depth search when there is more than one thread.
+    //Every pool thread gets its own worker A.I. for the move lists it searches with.
+    private ForkJoinPool pool;
+    private ThreadLocal<AI> workers;
+    //Task a worker A.I. is searching for. The worker stops as soon as it sees the task has been cancelled.
+    private MinimaxTask task;
+    //Half width of the aspiration window iterative deepening starts each depth with. One man is worth 5.
+    private static final int ASPIRATION_WINDOW = 10;
+    //If true, iterative deepening keeps searching on the opponent's time after we move.
+    private boolean ponder;
+    //Ponder thread, or null if we are not pondering.
+    private Thread ponderThread;
+    //Board the ponder search is searching, after the reply we expect. Null if it is searching every reply.
+    private Board ponderBoard;
+    //True while the ponder search is running on the opponent's time.
+    private volatile boolean pondering;
+    //Move the ponder search picked, once it is done.
+    private volatile int ponderResult;
+    //Best line of play found by the last iterative deepening search, starting with our move.
+    private MoveList principalVariation = new MoveList();
+    //Number of root moves iterative deepening gets an exact score and a line for (multi-PV). 1 is a normal search.
+    private int multiPV = 1;
+    //Best root moves of the last iterative deepening search, best first, with their scores and lines.
+    private ArrayList<AnalysisLine> analysisLines = new ArrayList<AnalysisLine>();
+    //True while analyze is running. Nothing is printed, because no move is being made.
+    private boolean analyzing;
+    //The fixed depth search only splits up a node if it has at least this much depth left.
+    //Below this, a task is too small to be worth sharing out.
+    private static final int MIN_SPLIT_DEPTH = 3;
+    //Late move reductions. In iterative deepening, quiet moves after the first LMR_MIN_MOVES moves of a node
+    //with at least LMR_MIN_DEPTH depth left are first searched LMR_REDUCTION plies less deep.
+    private boolean lateMoveReductions = true;
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3;
+    private static final int LMR_REDUCTION = 1;
+    private static final int LMR_LATE_MOVES = 6;
+    //Futility pruning. In iterative deepening, with FUTILITY_DEPTH or less depth left, quiet moves are skipped when
+    //the score of the board is more than FUTILITY_MARGIN for each ply left away from the window. A man is worth 5.
+    private boolean futilityPruning = true;
+    private static final int FUTILITY_DEPTH = 2;
+    private static final int FUTILITY_MARGIN = 10;
+    //ProbCut. In iterative deepening, a shallow search predicts whether a deep one would fail high or low.
+    //Null if it is off.
+    private ProbCut probCut;
+    //Reusable move lists, one for each ply of the search, so the search doesn't make new lists at every node.
+    //The quiescence search can go past maxDepth, so there are extra lists for it.
+    private MoveList[] moveLists = new MoveList[0];
+    //Staged move pickers for iterative deepening, one for each ply. Each one generates into the move list of its ply.
+    private MovePicker[] movePickers = new MovePicker[0];
+    private static final int QUIESCE_PLIES = 64;
+    //Quiescence table. Every searcher has its own, because it is small and only a thread's own leaves use it.
+    //It is kept from one move to the next, since a quiescence result doesn't depend on the depth of the search.
+    private static final int QUIESCE_TABLE_MB = 2;
+    private TranspositionTable quiesceTable;
+    //Delta pruning margin of the quiescence search, on top of the pieces a jump wins. A promotion is worth 10.
+    private static final int DELTA_MARGIN = 10;
+    //Killer moves and history used to sort the moves of each node.
+    private MoveOrdering ordering = new MoveOrdering();
+    //Nodes searched by iterative deepening, used to sort the root moves by the size of their subtrees.
+    private long nodes;
+    //Search statistics of iterative deepening. Every thread counts into its own A.I., so nothing is shared.
+    //The main search adds up its helpers' counts after each iteration.
+    private long quiescenceNodes;
+    private long betaCutoffs;
+    private long firstMoveCutoffs;
+    private long tableProbes;
+    private long tableHits;
+    private long tableStores;
+    //Statistics of every finished iteration of the last iterative deepening search.
+    private ArrayList<SearchStats> searchStats = new ArrayList<SearchStats>();
+    //Reusable list of the root moves tied for the best score.
+    private MoveList tiedMoves = new MoveList();
+    //Reusable move lists for the heuristic.
+    private MoveList maxJumpMoves = new MoveList();
+    private MoveList minJumpMoves = new MoveList();
 
     /**
      * Constructor for the AI
@@ -62,20 +159,32 @@ public class AI extends Player {
 
     /**
      * Have the A.I. make a move on the board.
-     * Also needs to take into account if the A.I. can make an additional move!
+     * A chain of jumps is made all at once. Every jump of the chain is added to the move history.
      *
      * @param board       board to use
      * @param moveHistory moveHistory to keep track of. Should be given from the driver.
      * @return MoveResult of the A.I.'s move
      */
     public MoveResult makeMove(Board board, ArrayList<Move> moveHistory) {
-        //Every time we decide on a move, we have to reset the transition table.
-        //The transition table stores the history of the previous iteration of deepening for move ordering.
-        transTable = new HashMap<Board, ITState>();
-        Move bestMove;
+        long moveStart = System.currentTimeMillis();
         System.out.println("I'm thinking...");
+        //If the opponent made the move we expected, the ponder search carries on as our search.
+        //Otherwise it is stopped, and what it left in the transposition table is still there for our search.
+        int bestMove = finishPondering(board);
+        //The transposition table keeps what we learned from the last move. Its entries are aged instead of thrown away.
+        if (transTable == null) {
+            setTransTable(new TranspositionTable(TRANS_TABLE_MB));
+        }
+        if (bestMove == Move.NO_MOVE) {
+            transTable.newSearch();
+            prepareMoveLists();
+            ordering.newSearch();
+            stopSearch = false;
+        }
         //Figure out the best move based on the difficulty setting.
-        if (this.botDifficulty == 4) {
+        if (bestMove != Move.NO_MOVE) {
+            System.out.println("I saw that move coming.");
+        } else if (this.botDifficulty == 4) {
             bestMove = findBestMoveITDeepening(board);
         }
         //Random move
@@ -85,51 +194,235 @@ public class AI extends Player {
             bestMove = findBestMove(board);
         }
 
-        MoveResult result = board.makeMove(bestMove, this.getSide());
-        if (result == null) {
-            System.out.println("This should not be reached");
+        //We can't make a move. Let the board tell us we have lost.
+        if (bestMove == Move.NO_MOVE) {
+            moveHistory.add(null);
+            return board.makeMove(null, this.getSide());
         }
 
-        //Check to see if we need to make another move.
-        if (result.isAdditionalMove()) {
-            //Let's keep track of where our piece ended up.
-            this.jumpCol = bestMove.getEndCol();
-            this.jumpRow = bestMove.getEndRow();
+        //Take the time we used off the clock.
+        if (timeControl != null) {
+            timeControl.moveMade(System.currentTimeMillis() - moveStart);
         }
-        moveHistory.add(bestMove);
-        return result;
+
+        //The move came from the move generator, so it doesn't need to be checked again.
+        board.applyMove(bestMove, this.getSide());
+        moveHistory.addAll(Move.unpackPath(bestMove));
+        if (ponder && this.botDifficulty == 4) {
+            startPondering(board, bestMove);
+        }
+        return new MoveResult(true, "Move completed.", false, false);
     }
 
     /**
-     * Decide on a random move and just return that random move.
-     * Used when bot difficulty is 0
+     * Make sure there is a move list for every ply the search can reach, and a quiescence table.
+     */
+    private void prepareMoveLists() {
+        if (quiesceTable == null) {
+            quiesceTable = new TranspositionTable(QUIESCE_TABLE_MB);
+        }
+        int plies = maxDepth + QUIESCE_PLIES;
+        if (moveLists.length < plies) {
+            moveLists = new MoveList[plies];
+            movePickers = new MovePicker[plies];
+            for (int i = 0; i < plies; i++) {
+                moveLists[i] = new MoveList();
+                movePickers[i] = new MovePicker(moveLists[i]);
+            }
+        }
+        ordering.prepare(plies);
+    }
+
+    /**
+     * Start the clock of a search. The deadline is the time limit, or the maximum time of the move on a game clock.
+     */
+    private void startClock() {
+        searchStart = System.currentTimeMillis();
+        targetTime = timeLimit;
+        long maximumTime = timeLimit;
+        if (timeControl != null) {
+            targetTime = timeControl.getTargetTime();
+            maximumTime = timeControl.getMaximumTime();
+        }
+        deadline = searchStart + maximumTime;
+    }
+
+    /**
+     * Start searching on the opponent's time.
+     * If the last search gave us a principal variation, we expect the opponent to play its second move,
+     * so we search the board after that move as if it was our turn already.
+     * Otherwise we search every reply the opponent has, which fills the transposition table for whichever one it picks.
      *
-     * @param board board to use
-     * @return random move
+     * @param board    board after our move
+     * @param lastMove move we just made
+     */
+    private void startPondering(Board board, int lastMove) {
+        Side opponent = flipSide(this.getSide());
+        if (board.isGameOver() || board.getTurn() != opponent) {
+            return;
+        }
+        final Board ponderRoot = Board.clone(board);
+        ponderBoard = null;
+        if (principalVariation.size() > 1 && principalVariation.get(0) == lastMove
+                && ponderRoot.isLegalMove(principalVariation.get(1), opponent)) {
+            ponderRoot.applyMove(principalVariation.get(1), opponent);
+            ponderBoard = Board.clone(ponderRoot);
+        }
+
+        transTable.newSearch();
+        prepareMoveLists();
+        ordering.newSearch();
+        stopSearch = false;
+        pondering = true;
+        ponderResult = Move.NO_MOVE;
+        searchStart = System.currentTimeMillis();
+        deadline = Long.MAX_VALUE;
+        final boolean expectedReply = ponderBoard != null;
+        ponderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (expectedReply) {
+                    ponderResult = findBestMoveITDeepening(ponderRoot);
+                } else {
+                    ponderReplies(ponderRoot);
+                }
+            }
+        });
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    /**
+     * Search every reply of the opponent with iterative deepening until stopped.
+     * Like a helper, this only leaves what it finds in the transposition table.
+     *
+     * @param board board with the opponent to move. The ponder thread has this board to itself.
+     */
+    private void ponderReplies(Board board) {
+        Side opponent = flipSide(this.getSide());
+        MoveList replies = moveLists[0];
+        board.generateMoves(opponent, replies);
+        for (int depth = 1; !stopSearch && depth <= this.maxDepth; depth++) {
+            for (int i = 0; i < replies.size() && !stopSearch; i++) {
+                long undo = board.applyMove(replies.get(i), opponent);
+                minimaxITDeepening(board, depth - 1, this.getSide(), Integer.MIN_VALUE, Integer.MAX_VALUE,
+                        true, 1);
+                board.undoMove(undo);
+            }
+        }
+    }
+
+    /**
+     * Finish pondering when it is our turn again.
+     * If the opponent made the move we expected, the ponder search becomes the real search: its clock starts now,
+     * and we wait for its move. Otherwise it is stopped.
+     *
+     * @param board board it is our turn on
+     * @return move of the ponder search, or Move.NO_MOVE if there wasn't a ponder search or it was stopped
      */
-    private Move findRandomMove(Board board) {
-        ArrayList<Move> moves;
+    private int finishPondering(Board board) {
+        if (ponderThread == null) {
+            return Move.NO_MOVE;
+        }
+        boolean ponderHit = ponderBoard != null && board.samePosition(ponderBoard);
+        if (ponderHit) {
+            startClock();
+            pondering = false;
+        } else {
+            stopSearch = true;
+        }
+        if (!joinPonderThread()) {
+            return Move.NO_MOVE;
+        }
+        return ponderHit ? ponderResult : Move.NO_MOVE;
+    }
 
-        //Get all the moves for the root node.
-        if (this.jumpRow == -1 && this.jumpCol == -1) {
-            moves = board.getAllPossibleMoves(this.getSide());
+    /**
+     * Stop pondering, for when the game is over.
+     */
+    public void stopPondering() {
+        if (ponderThread != null) {
+            stopSearch = true;
+            joinPonderThread();
         }
+    }
 
-        //We are in an additional move. Reset skip position.
-        else {
-            moves = board.getPossiblePieceMoves(this.jumpRow, this.jumpCol, this.getSide());
-            this.jumpCol = -1;
-            this.jumpRow = -1;
+    /**
+     * Rank the best moves for our side on a board without making a move (multi-PV).
+     * This is one iterative deepening search with the same time limit as a move. Every root move that could be
+     * one of the best is searched again with a wider window, so the moves don't each need a search of their own.
+     *
+     * @param board board to analyze
+     * @param lines number of moves to rank
+     * @return up to lines best moves, best first, each with its exact score, depth and principal variation.
+     * Empty if there are no moves, or if the time runs out before the first depth is searched.
+     */
+    public ArrayList<AnalysisLine> analyze(Board board, int lines) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("Error on analyze. Lines = " + lines);
+        }
+        stopPondering();
+        if (transTable == null) {
+            setTransTable(new TranspositionTable(TRANS_TABLE_MB));
+        }
+        transTable.newSearch();
+        prepareMoveLists();
+        ordering.newSearch();
+        stopSearch = false;
+        int savedMultiPV = multiPV;
+        multiPV = lines;
+        analyzing = true;
+        try {
+            findBestMoveITDeepening(board);
+        } finally {
+            multiPV = savedMultiPV;
+            analyzing = false;
+        }
+        return analysisLines;
+    }
+
+    /**
+     * Wait for the ponder thread to finish. It uses our move lists, so we can't search until it has.
+     *
+     * @return true if it finished on its own, false if we were interrupted and had to stop it
+     */
+    private boolean joinPonderThread() {
+        boolean interrupted = false;
+        while (ponderThread.isAlive()) {
+            try {
+                ponderThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                stopSearch = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
+        ponderThread = null;
+        pondering = false;
+        return !interrupted;
+    }
+
+    /**
+     * Decide on a random move and just return that random move.
+     * Used when bot difficulty is 0
+     *
+     * @param board board to use
+     * @return random move
+     */
+    private int findRandomMove(Board board) {
+        MoveList moves = moveLists[0];
+        board.generateMoves(this.getSide(), moves);
 
         //We can't make a move. We have lost.
         if (moves.isEmpty()) {
-            return null;
+            return Move.NO_MOVE;
         }
 
         /* This is the only move we can make. End the search*/
         if (moves.size() == 1) {
-            System.out.println("Forced to jump. Here is my move: " + moves.get(0).toString());
+            System.out.println("Forced to jump. Here is my move: " + Move.toString(moves.get(0)));
             return moves.get(0);
         }
 
@@ -145,36 +438,24 @@ public class AI extends Player {
      * @param board board to use
      * @return best possible move for the A.I.
      */
-    private Move findBestMove(Board board) {
+    private int findBestMove(Board board) {
         //Initialize values
         int bestScore = Integer.MIN_VALUE;
-        Move bestMove;
+        int bestMove;
         int alpha = Integer.MIN_VALUE;
         int beta = Integer.MAX_VALUE;
         int depth = maxDepth;
-        ArrayList<Move> moves;
-        ArrayList<Integer> scores;
-
-        //Get all the moves for the root node.
-        if (this.jumpRow == -1 && this.jumpCol == -1) {
-            moves = board.getAllPossibleMoves(this.getSide());
-        }
-
-        //We are in an additional move. Reset skip position.
-        else {
-            moves = board.getPossiblePieceMoves(this.jumpRow, this.jumpCol, this.getSide());
-            this.jumpCol = -1;
-            this.jumpRow = -1;
-        }
+        MoveList moves = moveLists[0];
+        board.generateMoves(this.getSide(), moves);
 
         //We can't make a move. We have lost.
         if (moves.isEmpty()) {
-            return null;
+            return Move.NO_MOVE;
         }
 
         /* This is the only move we can make. End the search*/
         if (moves.size() == 1) {
-            System.out.println("Forced to jump. Here is my move: " + moves.get(0).toString());
+            System.out.println("Forced to jump. Here is my move: " + Move.toString(moves.get(0)));
             return moves.get(0);
         }
 
@@ -183,169 +464,692 @@ public class AI extends Player {
 
         //NORMAL MOVE SETTING.
         //Now let's go through each move.
-        scores = new ArrayList<>();
-        moves = board.getAllPossibleMoves(this.getSide());
-        for (Move move : moves) {
-            // System.out.println(move.toString());
-            Board tempBoard = Board.clone(board);
-            tempBoard.makeMove(move, this.getSide());
-            //Run minimax on the child, and add the score to the list.
-            scores.add(minimax(tempBoard, depth - 1, flipSide(this.getSide()), alpha, beta, false));
-            long timestampTemp = System.currentTimeMillis();
-            long timeDiff = timestampTemp - timeStamp;
-            //System.out.println("Current Timestamp: " + timeStamp + "ms. Total time: " + timeDiff + "ms");
+        //The whole search runs on one copy of the board. Moves are applied and undone on it.
+        Board searchBoard = Board.clone(board);
+        if (searchBoard.getTurn() != this.getSide()) {
+            searchBoard.setTurn(this.getSide());
+        }
+        int[] scores = new int[moves.size()];
+        if (threads > 1) {
+            parallelRootScores(searchBoard, moves, depth, scores);
+        } else {
+            for (int i = 0; i < moves.size(); i++) {
+                long undo = searchBoard.applyMove(moves.get(i), this.getSide());
+                //Run minimax on the child, and add the score to the list.
+                scores[i] = minimax(searchBoard, depth - 1, flipSide(this.getSide()), alpha, beta, false, 1);
+                searchBoard.undoMove(undo);
+                long timestampTemp = System.currentTimeMillis();
+                long timeDiff = timestampTemp - timeStamp;
+                //System.out.println("Current Timestamp: " + timeStamp + "ms. Total time: " + timeDiff + "ms");
+            }
         }
 
-        bestScore = getBestMove(moves, scores);
+        bestScore = getBestMove(moves, scores, tiedMoves);
 
         //Pick tied move at random.
         Random rand = new Random();
-        bestMove = moves.get(rand.nextInt(moves.size()));
+        bestMove = tiedMoves.get(rand.nextInt(tiedMoves.size()));
         if (debug) {
-            System.out.println("Best move is: " + bestMove.toString() + ", with a score of: " + bestScore);
+            System.out.println("Best move is: " + Move.toString(bestMove) + ", with a score of: " + bestScore);
             System.out.println("Time spent: " + (System.currentTimeMillis() - timeStamp));
         }
-        System.out.println("My move is: " + bestMove.toString());
+        System.out.println("My move is: " + Move.toString(bestMove));
         return bestMove;
     }
 
     /**
      * Decide and return the best possible move to make using iterative deepening.
      * Initializes the minimax algorithm with iterative deepening for dynamic depth limiting.
+     * In multi-PV mode, the best multiPV root moves all get exact scores and lines, kept in analysisLines.
      *
      * @param board board to use
      * @return best possible move for the A.I.
      */
-    private Move findBestMoveITDeepening(Board board) {
+    private int findBestMoveITDeepening(Board board) {
         //Initialize values
-        int bestScore;
-        Move bestMove;
-        int alpha = Integer.MIN_VALUE;
-        int beta = Integer.MAX_VALUE;
-        int timeRange = 750;
+        int bestScore = 0;
+        int bestMove;
         int depth = 1;
-        ArrayList<Move> moves;
-
-        //Get all the moves for the root node.
-        if (this.jumpRow == -1 && this.jumpCol == -1) {
-            moves = board.getAllPossibleMoves(this.getSide());
-        }
-
-        //We are in an additional move. Reset jump position.
-        else {
-            moves = board.getPossiblePieceMoves(this.jumpRow, this.jumpCol, this.getSide());
-            this.jumpCol = -1;
-            this.jumpRow = -1;
-        }
+        MoveList moves = moveLists[0];
+        board.generateMoves(this.getSide(), moves);
+        analysisLines = new ArrayList<AnalysisLine>();
+        long statsStart = System.currentTimeMillis();
+        searchStats = new ArrayList<SearchStats>();
+        resetStats();
 
         //We can't make a move. We have lost.
         if (moves.isEmpty()) {
-            return null;
+            return Move.NO_MOVE;
         }
 
-        /* This is the only move we can make. End the search*/
-        if (moves.size() == 1) {
-            System.out.println("Forced to jump. Here is my move: " + moves.get(0).toString());
+        /* This is the only move we can make. End the search. Unless we want its score. */
+        if (moves.size() == 1 && multiPV == 1 && !analyzing) {
+            if (!pondering && !analyzing) {
+                System.out.println("Forced to jump. Here is my move: " + Move.toString(moves.get(0)));
+            }
             return moves.get(0);
         }
 
-        //Intialize time tracking.
-        long timeStamp = System.currentTimeMillis();
+        //Intialize time tracking. The search checks the deadline itself and stops as soon as it is reached.
+        //A ponder search has no deadline until the opponent makes the move it expected.
         long timeSpent;
-        //System.out.println("Current Timestamp: " + timeStamp + "ms");
-        boolean outOfTime = false;
-        ArrayList<Integer> scores;
-        ArrayList<Move> searched;
+        if (!pondering) {
+            startClock();
+        }
+        long iterationTime = 0;
+        int stableIterations = 0;
+        //Number of root moves that get an exact score, and the score of the worst of them in the last iteration.
+        int lines = Math.min(multiPV, moves.size());
+        int lastLineScore = 0;
+        int[] scores = new int[moves.size()];
+        long[] rootNodes = new long[moves.size()];
         //BestScore and BestMove.
-        bestMove = null;
-
-        //Start main loop
-        while (!outOfTime && depth <= this.maxDepth) {
-            //We initialize these here in the loop because if we have enough time to run the algorithm again...
-            //We need to overwrite the new values.
-            searched = new ArrayList<>();
-            scores = new ArrayList<>();
-
-            //We already generated the children in the previous iteration.
-            //Let's search the best move first.
-            if (depth != 1 && bestMove != null) {
-                Board tempBoard = Board.clone(board);
-                tempBoard.makeMove(bestMove, this.getSide());
-                int score = minimaxITDeepening(tempBoard, depth - 1, flipSide(this.getSide()),
-                        alpha, beta, false);
-                scores.add(score);
-                searched.add(bestMove);
-                timeSpent = System.currentTimeMillis() - timeStamp;
-                if (timeSpent >= timeLimit - timeRange) {
-                    System.out.println("My move is: " + bestMove.toString());
-                    return bestMove;
+        bestMove = Move.NO_MOVE;
+        //The whole search runs on one copy of the board. Moves are applied and undone on it.
+        Board searchBoard = Board.clone(board);
+        if (searchBoard.getTurn() != this.getSide()) {
+            searchBoard.setTurn(this.getSide());
+        }
+        //Until the first iteration has scored them, the root moves are sorted like any other node.
+        ordering.orderMoves(searchBoard, moves, Move.NO_MOVE, this.getSide(), 0);
+
+        //Helper threads search the same tree alongside us until we have our move.
+        Thread[] helperThreads = startHelpers(searchBoard);
+        try {
+            //Start main loop
+            while (!stopSearch && depth <= this.maxDepth) {
+                //Aspiration window. The score usually doesn't move far from one depth to the next,
+                //so we start with a small window around the last score, and open it up if the score falls outside.
+                int alpha = Integer.MIN_VALUE;
+                int beta = Integer.MAX_VALUE;
+                if (depth != 1) {
+                    alpha = lastLineScore - ASPIRATION_WINDOW;
+                    beta = bestScore + ASPIRATION_WINDOW;
                 }
-            }
+                long iterationStart = System.currentTimeMillis();
+                //Best move of this depth so far, if one has been found. Used if we run out of time part way through.
+                int partialMove = Move.NO_MOVE;
+                int partialScore = Integer.MIN_VALUE;
+
+                int iterationScore;
+                do {
+                    //Best score so far at this depth. Moves after the first only need to be checked against it.
+                    //With more than one line, it is the score of the worst of the best lines so far instead.
+                    int rootAlpha = alpha;
+
+                    //The root moves were sorted at the end of the last iteration, so the best move is first.
+                    for (int i = 0; i < moves.size(); i++) {
+                        //Run minimax on the child, and keep its score and how much work it took.
+                        long nodesBefore = nodes;
+                        scores[i] = searchRootMove(searchBoard, moves.get(i), depth, rootAlpha, beta, i < lines);
+                        rootNodes[i] = nodes - nodesBefore;
+                        //Out of time. The score of this move is unfinished, so it is thrown away.
+                        if (stopSearch) {
+                            return timeUp(bestMove, partialMove, moves, depth);
+                        }
+                        //A score inside the window beat everything before it, so this move is the best so far.
+                        //A score below the window is only an upper bound, so it can't be trusted to be better.
+                        if (scores[i] > Math.max(alpha, partialScore)) {
+                            partialMove = moves.get(i);
+                            partialScore = scores[i];
+                        }
+                        if (i >= lines - 1) {
+                            rootAlpha = Math.max(alpha, nthBestScore(scores, i + 1, lines));
+                        }
+                    }
 
-            for (Move move : moves) {
-                if (!move.equals(bestMove)) {
-                    Board tempBoard = Board.clone(board);
-                    tempBoard.makeMove(move, this.getSide());
-                    //Run minimax on the child, and add the score to the list.
-                    int score = minimaxITDeepening(tempBoard, depth - 1, flipSide(this.getSide()),
-                            alpha, beta, false);
-                    scores.add(score);
-                    searched.add(move);
-                    timeSpent = System.currentTimeMillis() - timeStamp;
-                    if (timeSpent >= timeLimit - timeRange) {
-                        System.out.println("My move is: " + bestMove.toString());
-                        return bestMove;
+                    //If the best score is on the edge of the window, it's only a bound. Open the window and go again.
+                    //Every line has to be inside the window for its score to be exact.
+                    iterationScore = rootAlpha;
+                    if (iterationScore <= alpha) {
+                        alpha = Integer.MIN_VALUE;
+                    } else if (nthBestScore(scores, moves.size(), 1) >= beta) {
+                        beta = Integer.MAX_VALUE;
+                    } else {
+                        break;
+                    }
+                    if (debug) {
+                        System.out.println("Aspiration window failed at depth " + depth + ", searching again.");
                     }
+                } while (true);
+
+                int lastScore = bestScore;
+                int lastMove = bestMove;
+                bestScore = getBestMove(moves, scores, tiedMoves);
+                //The best move is stable if the one we had is still one of the best.
+                stableIterations = tiedMoves.contains(lastMove) ? stableIterations + 1 : 0;
+                //Pick tied move at random.
+                Random rand = new Random();
+                bestMove = tiedMoves.get(rand.nextInt(tiedMoves.size()));
+                MoveOrdering.orderRootMoves(moves, bestMove, scores, rootNodes);
+                principalVariation = extractPrincipalVariation(searchBoard, bestMove, depth);
+                lastLineScore = scores[lines - 1];
+                analysisLines = analysisLines(searchBoard, moves, scores, lines, depth);
+                long lastIterationTime = iterationTime;
+                iterationTime = System.currentTimeMillis() - iterationStart;
+                timeSpent = System.currentTimeMillis() - searchStart;
+                SearchStats stats = collectStats(depth, iterationTime, System.currentTimeMillis() - statsStart);
+                if (debug) {
+                    System.out.println("Best move at depth " + depth + " : " + Move.toString(bestMove) +
+                            ", with a score of: " + bestScore);
+                    System.out.println("Principal variation: " + principalVariationToString());
+                    for (int i = 1; i < lines; i++) {
+                        System.out.println("Line " + (i + 1) + ": " + analysisLines.get(i));
+                    }
+                    System.out.println("Time spent: " + timeSpent + "ms");
+                    System.out.println(stats);
+                }
+                //A move with no other move to compare it to is only searched for its score, in multi-PV mode.
+                boolean easyMove = moves.size() > 1 && depth >= EASY_MOVE_DEPTH
+                        && scores[1] <= bestScore - EASY_MOVE_MARGIN;
+                if (timeControl != null && !pondering && !timeForAnotherIteration(timeSpent, targetTime,
+                        deadline - searchStart,
+                        iterationTime, lastIterationTime, stableIterations, bestScore < lastScore - SCORE_DROP
+                                && depth > 1, easyMove)) {
+                    break;
+                }
+                depth++;
+            }//end of main loop.
+            if (!pondering && !analyzing) {
+                System.out.println("My move is: " + Move.toString(bestMove));
+            }
+            return bestMove;
+        } finally {
+            stopHelpers(helperThreads);
+            deadline = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Decide if there is time for another iteration when playing on a clock.
+     * The target time is cut when the move is easy or has stopped changing, and doubled when the score drops.
+     * An iteration usually takes about as much longer than the last one as the last one took over the one before,
+     * so an iteration that would not finish before the maximum time is not started.
+     *
+     * @param timeSpent         time spent on this move so far
+     * @param targetTime        target time of this move
+     * @param maximumTime       maximum time of this move
+     * @param iterationTime     time the iteration that just finished took
+     * @param lastIterationTime time the iteration before it took
+     * @param stableIterations  number of iterations in a row the best move has stayed the same
+     * @param scoreDropped      true if the score dropped in the iteration that just finished
+     * @param easyMove          true if every other move is much worse than the best move
+     * @return true to start the next iteration
+     */
+    private boolean timeForAnotherIteration(long timeSpent, long targetTime, long maximumTime, long iterationTime,
+                                            long lastIterationTime, int stableIterations, boolean scoreDropped,
+                                            boolean easyMove) {
+        long budget = targetTime;
+        if (scoreDropped) {
+            budget = targetTime * 2;
+        } else if (easyMove) {
+            budget = targetTime / 4;
+        } else if (stableIterations >= STABLE_ITERATIONS) {
+            budget = targetTime / 2;
+        }
+
+        long growth = Math.max(2, Math.min(8, iterationTime / Math.max(1, lastIterationTime)));
+        long predicted = iterationTime * growth;
+        if (debug) {
+            System.out.println("Time budget: " + budget + "ms, next iteration: about " + predicted + "ms");
+        }
+        return timeSpent < budget && timeSpent + predicted < maximumTime;
+    }
+
+    /**
+     * Pick the move to make when the search runs out of time part way through an iteration.
+     * A move that already beat the best move of the last iteration is used, because it was searched deeper.
+     * Otherwise the best move of the last finished iteration is used.
+     *
+     * @param bestMove    best move of the last finished iteration, or Move.NO_MOVE if there wasn't one
+     * @param partialMove best move of the unfinished iteration so far, or Move.NO_MOVE if there isn't one
+     * @param moves       root moves, best first
+     * @param depth       depth of the unfinished iteration
+     * @return move to make
+     */
+    private int timeUp(int bestMove, int partialMove, MoveList moves, int depth) {
+        int move = bestMove;
+        if (partialMove != Move.NO_MOVE) {
+            move = partialMove;
+        } else if (move == Move.NO_MOVE) {
+            //Not even the first iteration finished. The first move is still better than nothing.
+            move = moves.get(0);
+        }
+        //A ponder search that was stopped is thrown away, so it has nothing to say.
+        if (pondering || analyzing) {
+            return move;
+        }
+        if (debug) {
+            System.out.println("Out of time at depth " + depth + " after " + nodes + " nodes.");
+        }
+        System.out.println("My move is: " + Move.toString(move));
+        return move;
+    }
+
+    /**
+     * Get the nth best of the first scores of the root moves.
+     *
+     * @param scores scores of the root moves
+     * @param count  number of scores to look at
+     * @param n      1 for the best score, 2 for the second best, and so on. At most count.
+     * @return nth best score
+     */
+    private static int nthBestScore(int[] scores, int count, int n) {
+        if (n == 1) {
+            int best = Integer.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                best = Math.max(best, scores[i]);
+            }
+            return best;
+        }
+        //There are never many root moves.
+        int[] sorted = Arrays.copyOf(scores, count);
+        Arrays.sort(sorted);
+        return sorted[count - n];
+    }
+
+    /**
+     * Make the lines of a multi-PV search from the root moves of a finished iteration.
+     *
+     * @param board board to search, with our side to move
+     * @param moves root moves, sorted best first
+     * @param scores score of each root move. The first lines scores are exact.
+     * @param lines number of lines
+     * @param depth depth of the iteration
+     * @return best lines, best first
+     */
+    private ArrayList<AnalysisLine> analysisLines(Board board, MoveList moves, int[] scores, int lines, int depth) {
+        ArrayList<AnalysisLine> result = new ArrayList<AnalysisLine>();
+        result.add(new AnalysisLine(moves.get(0), scores[0], depth, principalVariation));
+        for (int i = 1; i < lines; i++) {
+            result.add(new AnalysisLine(moves.get(i), scores[i], depth,
+                    extractPrincipalVariation(board, moves.get(i), depth)));
+        }
+        return result;
+    }
+
+    /**
+     * Search one root move for iterative deepening using principal variation search.
+     * The first move is searched with the whole window. Every other move is first searched with a zero window
+     * just below the best score so far, which only tells us if the move is at least as good as the best move.
+     * Only the moves that are get searched again with the whole window to get their score.
+     * Moves that tie with the best move get their real score too, so a tied move can still be picked at random.
+     * With more than one line, the first moves get the whole window and the rest are checked against the worst
+     * of the best lines instead, so every move that makes it into the lines gets its real score.
+     *
+     * @param board     board to search, with our side to move
+     * @param move      root move to search
+     * @param depth     depth of this iteration
+     * @param rootAlpha best score so far, or the bottom of the aspiration window
+     * @param beta      top of the aspiration window
+     * @param first     true to search the move with the whole window, like the first move of a depth
+     * @return score of the move. Exact if it is at least rootAlpha, otherwise an upper bound.
+     */
+    private int searchRootMove(Board board, int move, int depth, int rootAlpha, int beta, boolean first) {
+        long undo = board.applyMove(move, this.getSide());
+        int score;
+        if (first || rootAlpha == Integer.MIN_VALUE) {
+            score = minimaxITDeepening(board, depth - 1, flipSide(this.getSide()), rootAlpha, beta, false, 1);
+        } else {
+            score = minimaxITDeepening(board, depth - 1, flipSide(this.getSide()), rootAlpha - 1, rootAlpha,
+                    false, 1);
+            if (score >= rootAlpha && score < beta) {
+                score = minimaxITDeepening(board, depth - 1, flipSide(this.getSide()), rootAlpha - 1, beta,
+                        false, 1);
+            }
+        }
+        board.undoMove(undo);
+        return score;
+    }
+
+    /**
+     * Follow the best moves stored in the transposition table from a root move to get the principal variation.
+     *
+     * @param board    board to search, with our side to move. It is back to how it was when this returns.
+     * @param rootMove best root move
+     * @param depth    depth that was searched. The line is never longer than this.
+     * @return best line of play, starting with the root move
+     */
+    private MoveList extractPrincipalVariation(Board board, int rootMove, int depth) {
+        MoveList line = new MoveList();
+        long[] undo = new long[depth];
+        int move = rootMove;
+        while (move != Move.NO_MOVE && line.size() < depth) {
+            undo[line.size()] = board.applyMove(move, board.getTurn());
+            line.add(move);
+            long entry = transTable.probe(board.getKey());
+            move = entry == 0 ? Move.NO_MOVE : TranspositionTable.getMove(entry);
+            //Stop at anything that isn't a legal move here.
+            if (!board.isLegalMove(move, board.getTurn())) {
+                move = Move.NO_MOVE;
+            }
+        }
+        for (int i = line.size() - 1; i >= 0; i--) {
+            board.undoMove(undo[i]);
+        }
+        return line;
+    }
+
+    /**
+     * Get the principal variation of the last search as a string.
+     *
+     * @return moves of the principal variation, separated by spaces
+     */
+    private String principalVariationToString() {
+        String result = "";
+        for (int i = 0; i < principalVariation.size(); i++) {
+            if (i > 0) {
+                result += " ";
+            }
+            result += Move.toString(principalVariation.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Score every root move with the fork/join pool.
+     * Every root move is searched with the full window, so the scores are exactly the same as the ones the
+     * single threaded search gives, and the root moves don't depend on each other.
+     *
+     * @param board  board to search, with our side to move
+     * @param moves  root moves
+     * @param depth  depth to search to
+     * @param scores array to fill with the score of each root move
+     */
+    private void parallelRootScores(Board board, MoveList moves, int depth, int[] scores) {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads);
+            workers = new ThreadLocal<AI>();
+        }
+
+        final ArrayList<MinimaxTask> tasks = new ArrayList<MinimaxTask>();
+        for (int i = 0; i < moves.size(); i++) {
+            Board child = Board.clone(board);
+            child.applyMove(moves.get(i), this.getSide());
+            tasks.add(new MinimaxTask(child, depth - 1, flipSide(this.getSide()),
+                    Integer.MIN_VALUE, Integer.MAX_VALUE, false, 1, null));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = tasks.get(i).join();
+        }
+    }
+
+    /**
+     * Get the worker A.I. of the current pool thread, making it if this thread doesn't have one yet.
+     * The worker runs the single threaded search on the parts of the tree that are too small to split.
+     *
+     * @param task task the worker searches for. The worker stops if it is cancelled.
+     * @return worker A.I. for this thread
+     */
+    private AI worker(MinimaxTask task) {
+        AI worker = workers.get();
+        if (worker == null) {
+            worker = new AI(this.getSide(), this.botDifficulty, false);
+            workers.set(worker);
+        }
+        worker.maxDepth = this.maxDepth;
+        worker.prepareMoveLists();
+        worker.task = task;
+        worker.stopSearch = false;
+        return worker;
+    }
+
+    /**
+     * Perform the minimax algorithm with alpha beta pruning, splitting the work over the fork/join pool.
+     * Young Brothers Wait: the first move of a node is searched on its own, so that the other moves can be
+     * searched in parallel with the bounds it gives. If one of those moves causes a cut off, the moves that are
+     * still being searched are cancelled. A cancelled move stops at its next split node, or within POLL_NODES nodes
+     * if a worker is searching it.
+     *
+     * @param task  task this search is running in. Used to check if the task has been cancelled.
+     * @param board current board state. This search has the board to itself.
+     * @param depth depth
+     * @param side  side to move
+     * @param alpha alpha value
+     * @param beta  beta value
+     * @param isMax true if a maxNode
+     * @param ply   distance from the root
+     * @return result of minimax
+     */
+    private int parallelMinimax(MinimaxTask task, Board board, int depth, Side side, int alpha, int beta,
+                                boolean isMax, int ply) {
+        if (depth < MIN_SPLIT_DEPTH || board.isGameOver()) {
+            AI worker = worker(task);
+            int score = worker.minimax(board, depth, side, alpha, beta, isMax, ply);
+            //The worker outlives the search, so it mustn't keep the task, and the A.I. the task belongs to, alive.
+            worker.task = null;
+            return score;
+        }
+
+        //Split nodes are rare, so they get their own move list.
+        MoveList moves = new MoveList();
+        board.generateMoves(side, moves);
+        int result = isMax ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+        //The eldest brother first.
+        long undo = board.applyMove(moves.get(0), side);
+        int score = parallelMinimax(task, board, depth - 1, flipSide(side), alpha, beta, !isMax, ply + 1);
+        board.undoMove(undo);
+        if (isMax) {
+            result = Math.max(result, score);
+            alpha = Math.max(alpha, result);
+        } else {
+            result = Math.min(result, score);
+            beta = Math.min(beta, result);
+        }
+        if (beta <= alpha || moves.size() == 1 || task.isAborted()) {
+            return result;
+        }
+
+        //Now the younger brothers, all at once, each on its own board.
+        ArrayList<MinimaxTask> tasks = new ArrayList<MinimaxTask>();
+        for (int i = 1; i < moves.size(); i++) {
+            Board child = Board.clone(board);
+            child.applyMove(moves.get(i), side);
+            MinimaxTask childTask = new MinimaxTask(child, depth - 1, flipSide(side), alpha, beta, !isMax,
+                    ply + 1, task);
+            childTask.fork();
+            tasks.add(childTask);
+        }
+        boolean cutOff = false;
+        for (MinimaxTask childTask : tasks) {
+            //Once we have a cut off, the rest of the moves don't matter.
+            if (cutOff) {
+                childTask.cancel(false);
+                continue;
+            }
+            score = childTask.join();
+            if (isMax) {
+                result = Math.max(result, score);
+                alpha = Math.max(alpha, result);
+            } else {
+                result = Math.min(result, score);
+                beta = Math.min(beta, result);
+            }
+            cutOff = beta <= alpha;
+        }
+        return result;
+    }
+
+    /**
+     * A fork/join task that searches one board with parallelMinimax.
+     */
+    private class MinimaxTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+        private Board board;
+        private int depth;
+        private Side side;
+        private int alpha;
+        private int beta;
+        private boolean isMax;
+        private int ply;
+        //Task of the parent node, or null at the root.
+        private MinimaxTask parent;
+
+        MinimaxTask(Board board, int depth, Side side, int alpha, int beta, boolean isMax, int ply,
+                    MinimaxTask parent) {
+            this.board = board;
+            this.depth = depth;
+            this.side = side;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.isMax = isMax;
+            this.ply = ply;
+            this.parent = parent;
+        }
+
+        /**
+         * Check if this task or any task above it has been cancelled.
+         *
+         * @return true if the result of this task is no longer needed
+         */
+        boolean isAborted() {
+            for (MinimaxTask t = this; t != null; t = t.parent) {
+                if (t.isCancelled()) {
+                    return true;
                 }
             }
+            return false;
+        }
 
-            bestScore = getBestMove(searched, scores);
-            //Pick tied move at random.
-            Random rand = new Random();
-            bestMove = searched.get(rand.nextInt(searched.size()));
-            timeSpent = System.currentTimeMillis() - timeStamp;
-            if (debug) {
-                System.out.println("Best move at depth " + depth + " : " + bestMove.toString() +
-                        ", with a score of: " + bestScore);
-                System.out.println("Time spent: " + timeSpent + "ms");
+        @Override
+        protected Integer compute() {
+            if (isAborted()) {
+                return 0;
             }
-            if (timeSpent >= timeLimit - timeRange) {
-                outOfTime = true;
+            return parallelMinimax(this, board, depth, side, alpha, beta, isMax, ply);
+        }
+    }
+
+    /**
+     * Start a helper thread for every thread after the first.
+     *
+     * @param board board to search, with our side to move
+     * @return the helper threads that were started
+     */
+    private Thread[] startHelpers(Board board) {
+        if (helpers.length != threads - 1) {
+            helpers = new AI[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new AI(this.getSide(), this.botDifficulty, false);
             }
-            depth++;
-        }//end of main loop.
-        System.out.println("My move is: " + bestMove.toString());
-        return bestMove;
+        }
+
+        Thread[] helperThreads = new Thread[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            final AI helper = helpers[i];
+            final Board helperBoard = Board.clone(board);
+            final int helperIndex = i + 1;
+            helper.maxDepth = this.maxDepth;
+            helper.transTable = this.transTable;
+            helper.lateMoveReductions = this.lateMoveReductions;
+            helper.futilityPruning = this.futilityPruning;
+            helper.probCut = this.probCut;
+            helper.stopSearch = false;
+            helperThreads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    helper.helperSearch(helperBoard, helperIndex);
+                }
+            });
+            helperThreads[i].setDaemon(true);
+            helperThreads[i].start();
+        }
+        return helperThreads;
+    }
+
+    /**
+     * Stop the helper threads and wait for them to finish.
+     *
+     * @param helperThreads threads returned by startHelpers
+     */
+    private void stopHelpers(Thread[] helperThreads) {
+        for (AI helper : helpers) {
+            helper.stopSearch = true;
+        }
+        for (Thread thread : helperThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
     }
 
+    /**
+     * Run iterative deepening as a helper until stopped (Lazy SMP).
+     * A helper doesn't pick a move. It searches the same tree as the main search and leaves what it finds in the
+     * shared transposition table, where the main search picks it up.
+     * Every other helper starts a depth ahead, and each helper searches the root moves in its own order,
+     * so the threads spread out over the tree instead of all searching the same boards at the same time.
+     *
+     * @param board       board to search, with our side to move. The helper has this board to itself.
+     * @param helperIndex number of the helper, starting at 1
+     */
+    private void helperSearch(Board board, int helperIndex) {
+        prepareMoveLists();
+        ordering.newSearch();
+        resetStats();
+        MoveList moves = moveLists[0];
+        board.generateMoves(this.getSide(), moves);
+        Random rand = new Random(helperIndex);
+        for (int i = moves.size() - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int move = moves.get(i);
+            moves.set(i, moves.get(j));
+            moves.set(j, move);
+        }
+
+        int depth = 1 + helperIndex % 2;
+        while (!stopSearch && depth <= this.maxDepth) {
+            for (int i = 0; i < moves.size() && !stopSearch; i++) {
+                long undo = board.applyMove(moves.get(i), this.getSide());
+                minimaxITDeepening(board, depth - 1, flipSide(this.getSide()),
+                        Integer.MIN_VALUE, Integer.MAX_VALUE, false, 1);
+                board.undoMove(undo);
+            }
+            depth++;
+        }
+    }
 
     /**
      * Get the best move out of the list of searched moves and scores.
      * Assumed that Searched[i] corresponds to scores[i]
-     * This method also will alter searched and scores.
+     * The moves tied for the best score are put in tied. Searched and scores are left as they are.
      *
      * @param searched moves that were searched
      * @param scores   scores of these moves
+     * @param tied     list to fill with the moves tied for the best score
      * @return best score found in these moves
      */
-    private int getBestMove(ArrayList<Move> searched, ArrayList<Integer> scores) {
+    private int getBestMove(MoveList searched, int[] scores, MoveList tied) {
         int bestScore = Integer.MIN_VALUE;
 
         //We are max, so we want the highest out of all of the scores we saw.
         //If a score is tied, let's just pick one at random.
         //Easiest way I found to do this is to just find the best score, and extract all the ones that aren't tied.
-        for (int i = 0; i < scores.size(); i++) {
-            if (scores.get(i) > bestScore) {
-                bestScore = scores.get(i);
+        for (int i = 0; i < searched.size(); i++) {
+            if (scores[i] > bestScore) {
+                bestScore = scores[i];
             }
         }
 
         //Filter scores to find tied ones
-        for (int i = 0; i < scores.size(); i++) {
-            if (scores.get(i) < bestScore) {
-                scores.remove(i);
-                searched.remove(i);
-                i--;
+        tied.clear();
+        for (int i = 0; i < searched.size(); i++) {
+            if (scores[i] == bestScore) {
+                tied.add(searched.get(i));
             }
         }
         return bestScore;
@@ -360,38 +1164,42 @@ public class AI extends Player {
      * @param alpha alpha value
      * @param beta  beta value
      * @param isMax true if a maxNode
+     * @param ply   distance from the root, used to pick this node's move list
      * @return result of minimax
      */
-    private int minimax(Board board, int depth, Side side, int alpha, int beta, boolean isMax) {
+    private int minimax(Board board, int depth, Side side, int alpha, int beta, boolean isMax, int ply) {
         int result;
+        //Quiescence counts the leaves itself, so they are only counted once.
         if (depth == 0 || board.isGameOver()) { //Max Depth
-            return quiesce(board, side, alpha, beta, isMax);
+            return quiesce(board, side, alpha, beta, isMax, ply);
+        }
+        //A worker whose task was cancelled just unwinds. Its result is never used.
+        if (outOfTime()) {
+            return 0;
         }
 
         //Get all the possible moves
-        ArrayList<Move> moves = board.getAllPossibleMoves(side);
+        MoveList moves = moveLists[ply];
+        board.generateMoves(side, moves);
+        ordering.orderMoves(board, moves, Move.NO_MOVE, side, ply);
 
         //Max node
         if (isMax) {
             result = Integer.MIN_VALUE;
             //Going from right to left, get all the moves.
-            for (Move move : moves) {
+            for (int i = 0; i < moves.size(); i++) {
                 //Generate child
-                boolean nextMax = isMax;
-                Side nextSide = side;
-                Board tempBoard = Board.clone(board);
-                MoveResult moveResult = tempBoard.makeMove(move, side);
-
-                //It's still max's turn.
-                if (moveResult.isAdditionalMove()) {
-                    nextSide = flipSide(side);
-                    nextMax = !isMax;
-                    //System.out.println("Double Jump Found: " + nextSide + ", " + nextMax);
+                long undo = board.applyMove(moves.get(i), side);
+                result = Math.max(result, minimax(board, depth - 1, flipSide(side), alpha, beta, !isMax,
+                        ply + 1));
+                board.undoMove(undo);
+                if (stopSearch) {
+                    return 0;
                 }
-                result = Math.max(result, minimax(tempBoard, depth - 1, flipSide(nextSide), alpha, beta, !nextMax));
                 alpha = Math.max(alpha, result);
 
                 if (beta <= alpha) {
+                    ordering.recordCutoff(moves.get(i), side, depth, ply);
                     // System.out.println("Cut off at Max: " + depth + ", " + "Alpha: " + alpha + ", Beta: " + beta);
                     return result;
                 }
@@ -402,23 +1210,20 @@ public class AI extends Player {
         //Min node
         else {
             result = Integer.MAX_VALUE;
-            for (Move move : moves) {
+            for (int i = 0; i < moves.size(); i++) {
                 //Generate child
-                boolean nextMax = isMax;
-                Side nextSide = side;
-                Board tempBoard = Board.clone(board);
-                MoveResult moveResult = tempBoard.makeMove(move, side);
-                //It's still min's turn.
-                if (moveResult.isAdditionalMove()) {
-                    nextSide = flipSide(side);
-                    nextMax = !isMax;
-                    // System.out.println("Double Jump Found: " + nextSide + ", " + nextMax);
-                }
+                long undo = board.applyMove(moves.get(i), side);
 
-                result = Math.min(result, minimax(tempBoard, depth - 1, flipSide(nextSide), alpha, beta, !nextMax));
+                result = Math.min(result, minimax(board, depth - 1, flipSide(side), alpha, beta, !isMax,
+                        ply + 1));
+                board.undoMove(undo);
+                if (stopSearch) {
+                    return 0;
+                }
                 beta = Math.min(beta, result);
 
                 if (beta <= alpha) {
+                    ordering.recordCutoff(moves.get(i), side, depth, ply);
                     //  System.out.println("Cut off at Min at: " + depth + " Alpha: " + alpha + " Beta: " + beta);
                     return result;
                 }
@@ -427,6 +1232,31 @@ public class AI extends Player {
         }
     }
 
+    /**
+     * Search a board to a fixed depth with the iterative deepening search and get its score, from our side.
+     * There is no time limit and no ProbCut, because this is what ProbCut is fitted from.
+     *
+     * @param board board to search, with the side to move set
+     * @param depth depth to search to
+     * @return score of the board
+     */
+    int searchScore(Board board, int depth) {
+        if (transTable == null) {
+            setTransTable(new TranspositionTable(TRANS_TABLE_MB));
+        }
+        prepareMoveLists();
+        ProbCut savedProbCut = probCut;
+        probCut = null;
+        stopSearch = false;
+        deadline = Long.MAX_VALUE;
+        Board searchBoard = Board.clone(board);
+        Side side = searchBoard.getTurn();
+        int score = minimaxITDeepening(searchBoard, depth, side, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                side == this.getSide(), 0);
+        probCut = savedProbCut;
+        return score;
+    }
+
     /**
      * Perform the minimax algorithm on the specified board using iterative deepening.
      * The algorithm searches using "Best Move First" from previous iterations.
@@ -437,14 +1267,20 @@ public class AI extends Player {
      * @param alpha alpha value
      * @param beta  beta value
      * @param isMax true if a maxNode
+     * @param ply   distance from the root, used to pick this node's move list
      * @return result of minimax
      */
-    private int minimaxITDeepening(Board board, int depth, Side side, int alpha, int beta, boolean isMax) {
+    private int minimaxITDeepening(Board board, int depth, Side side, int alpha, int beta, boolean isMax, int ply) {
         int result;
 
-        //Perform Queisence Search on this board.
+        //Perform Queisence Search on this board. It counts the node and checks the time itself.
         if (depth == 0 || board.isGameOver()) {
-            return quiesce(board, side, alpha, beta, isMax);
+            return quiesce(board, side, alpha, beta, isMax, ply);
+        }
+
+        //A search that has been stopped just unwinds. Its scores are never stored or used.
+        if (outOfTime()) {
+            return 0;
         }
 
         /*
@@ -453,15 +1289,74 @@ public class AI extends Player {
             If the cut off is a fail-high or an exact, we store the best move.
             If the cut off is a fail-low, we DO NOT store the best move.
             If there exists a best move on the board inside the hash table, use that best move.
+            If the board was already searched deep enough, its stored score can end the search right away.
+            Scores are always from the A.I.'s side, so a score means the same thing at max and min nodes.
          */
         else {
-            ArrayList<Move> moves = board.getAllPossibleMoves(side);
-            Move bestMove = null;
-
+            int bestMove = Move.NO_MOVE;
+            int alphaOrig = alpha;
+            int betaOrig = beta;
 
             //Search best move first, if it exists.
-            if (transTable.containsKey(board) && transTable.get(board).getMove() != null) {
-                bestMove = transTable.get(board).getMove();
+            long entry = transTable.probe(board.getKey());
+            tableProbes++;
+            if (entry != 0) {
+                tableHits++;
+                bestMove = TranspositionTable.getMove(entry);
+                if (TranspositionTable.getDepth(entry) >= depth) {
+                    //The table keeps scores from the side to move. Turn them around to our side.
+                    int score = TranspositionTable.getScore(entry);
+                    int bound = TranspositionTable.getBound(entry);
+                    if (side != this.getSide()) {
+                        score = -score;
+                        bound = flipBound(bound);
+                    }
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            //ProbCut. A shallow zero window search around a bound far enough outside the window tells us,
+            //with the confidence ProbCut was fitted for, that the deep search would fail high or fail low.
+            //The shallow search uses this ply's picker, so it has to come before ours is reset.
+            if (probCut != null && depth >= probCut.getDeepDepth()) {
+                int shallowDepth = depth - probCut.getReduction();
+                if (beta != Integer.MAX_VALUE) {
+                    int bound = probCut.upperBound(beta);
+                    if (minimaxITDeepening(board, shallowDepth, side, bound - 1, bound, isMax, ply) >= bound) {
+                        return stopSearch ? 0 : beta;
+                    }
+                }
+                if (alpha != Integer.MIN_VALUE) {
+                    int bound = probCut.lowerBound(alpha);
+                    if (minimaxITDeepening(board, shallowDepth, side, bound, bound + 1, isMax, ply) <= bound) {
+                        return stopSearch ? 0 : alpha;
+                    }
+                }
+                if (stopSearch) {
+                    return 0;
+                }
+            }
+
+            //The moves are generated a stage at a time, starting with the best move from the table,
+            //so a cut off on one of the first moves saves generating the rest.
+            MovePicker picker = movePickers[ply];
+            picker.reset(board, side, bestMove, ordering, ply);
+            bestMove = Move.NO_MOVE;
+            int move;
+            int moveCount = 0;
+
+            //Near the leaves, a quiet move can't change the score by much, so we need the score of the board
+            //to tell which quiet moves are futile. Jumps are forced, so with a jump there are no quiet moves.
+            int staticScore = 0;
+            boolean futile = futilityPruning && depth <= FUTILITY_DEPTH && !board.hasCaptures(side);
+            if (futile) {
+                staticScore = heuristic(board, this.getSide());
+                futile = isMax ? staticScore + FUTILITY_MARGIN * depth <= alpha
+                        : staticScore - FUTILITY_MARGIN * depth >= beta;
             }
 
             //There's a lot of repeated code here, but I couldn't figure out how to break it up.
@@ -469,65 +1364,42 @@ public class AI extends Player {
             //Max node
             if (isMax) {
                 result = Integer.MIN_VALUE;
+                while ((move = picker.next()) != Move.NO_MOVE) {
+                    long undo = board.applyMove(move, side);
+                    boolean quiet = moveCount > 0 && isQuietMove(board, move, undo, side, ply);
+                    moveCount++;
+                    //Futility pruning. Even with the margin this move can't get us above alpha.
+                    if (quiet && futile) {
+                        board.undoMove(undo);
+                        continue;
+                    }
 
-                //Search best move first.
-                if (bestMove != null) {
-                    Side nextSide = side;
-                    boolean nextMax = isMax;
-                    Board bestBoard = Board.clone(board);
-                    MoveResult moveResult = bestBoard.makeMove(bestMove, side);
-
-                    //It's still max's turn.
-                    if (moveResult.isAdditionalMove()) {
-                        nextSide = flipSide(side);
-                        nextMax = !isMax;
-                        // System.out.println("Double Jump Found: " + nextSide + ", " + nextMax);
+                    int tempResult = result;
+                    result = Math.max(result, searchChild(board, depth, side, alpha, beta, isMax, ply,
+                            result != Integer.MIN_VALUE, reduction(depth, moveCount, quiet)));
+                    board.undoMove(undo);
+                    if (stopSearch) {
+                        return 0;
                     }
 
-                    result = Math.max(result, minimaxITDeepening(bestBoard, depth - 1, flipSide(nextSide),
-                            alpha, beta, !nextMax));
-                    alpha = Math.max(alpha, result);
+                    //New best move found.
+                    if (tempResult != result) {
+                        bestMove = move;
+                    }
 
+                    alpha = Math.max(alpha, result);
                     if (beta <= alpha) {
-                        //Beta cut off. store it.
-                        transTable.put(board, new ITState(board, bestMove, result, depth));
+                        //Beta cut off. Store it.
+                        countCutoff(moveCount);
+                        ordering.recordCutoff(move, side, depth, ply);
+                        storeState(board, side, move, result, depth, TranspositionTable.LOWER);
                         return result;
                     }
                 }
-                for (Move move : moves) {
-                    if (!move.equals(bestMove)) {
-                        Side nextSide = side;
-                        boolean nextMax = isMax;
-                        Board tempBoard = Board.clone(board);
-                        MoveResult moveResult = tempBoard.makeMove(move, side);
-
-                        //It's still max's turn.
-                        if (moveResult.isAdditionalMove()) {
-                            nextSide = flipSide(side);
-                            nextMax = !isMax;
-                            //  System.out.println("Double Jump Found: " + nextSide + ", " + nextMax);
-                        }
-
-                        int tempResult = result;
-                        result = Math.max(result, minimaxITDeepening(tempBoard, depth - 1, flipSide(nextSide),
-                                alpha, beta, !nextMax));
-
-                        //New best move found.
-                        if (tempResult != result) {
-                            bestMove = move;
-                        }
-
-                        alpha = Math.max(alpha, result);
-                        if (beta <= alpha) {
-                            //Beta cut off. Store it.
-                            transTable.put(board, new ITState(board, move, result, depth));
-                            return result;
-                        }
-                    }
-                }
                 //System.out.println("Result Max normal: " + result);
-                //Exact value. Store it.
-                transTable.put(board, new ITState(board, bestMove, result, depth));
+                //Exact value, unless every move failed low. Store it.
+                storeState(board, side, bestMove, result, depth,
+                        result <= alphaOrig ? TranspositionTable.UPPER : TranspositionTable.EXACT);
                 return result;
             }
 
@@ -535,127 +1407,371 @@ public class AI extends Player {
             //Min node
             else {
                 result = Integer.MAX_VALUE;
-                //Search best move first.
-                if (bestMove != null) {
-                    Side nextSide = side;
-                    boolean nextMax = isMax;
-                    Board tempBoard = Board.clone(board);
-                    MoveResult moveResult = tempBoard.makeMove(bestMove, side);
-
-                    //It's still min's turn.
-                    if (moveResult.isAdditionalMove()) {
-                        nextSide = flipSide(side);
-                        nextMax = !isMax;
-                        // System.out.println("Double Jump Found: " + nextSide + ", " + nextMax);
+                while ((move = picker.next()) != Move.NO_MOVE) {
+                    long undo = board.applyMove(move, side);
+                    boolean quiet = moveCount > 0 && isQuietMove(board, move, undo, side, ply);
+                    moveCount++;
+                    //Futility pruning. Even with the margin this move can't get the opponent below beta.
+                    if (quiet && futile) {
+                        board.undoMove(undo);
+                        continue;
+                    }
+
+                    int tempResult = result;
+                    result = Math.min(result, searchChild(board, depth, side, alpha, beta, isMax, ply,
+                            result != Integer.MAX_VALUE, reduction(depth, moveCount, quiet)));
+                    board.undoMove(undo);
+                    if (stopSearch) {
+                        return 0;
                     }
 
-                    result = Math.min(result, minimaxITDeepening(tempBoard, depth - 1, flipSide(nextSide),
-                            alpha, beta, !nextMax));
+                    //New best move found.
+                    if (tempResult != result) {
+                        bestMove = move;
+                    }
                     beta = Math.min(beta, result);
 
                     if (beta <= alpha) {
-                        //Alpha cut off, NULL MOVE STORE.
-                        transTable.put(board, new ITState(tempBoard, null, result, depth));
+                        //Alpha cut off. Store the move that refuted us, it's the opponent's best move here.
+                        //It's a beta cut off from the opponent's side, so it's counted as one.
+                        countCutoff(moveCount);
+                        ordering.recordCutoff(move, side, depth, ply);
+                        storeState(board, side, move, result, depth, TranspositionTable.UPPER);
                         return result;
                     }
                 }
-                for (Move move : moves) {
-                    if (!move.equals(bestMove)) {
-                        Side nextSide = side;
-                        boolean nextMax = isMax;
-                        Board tempBoard = Board.clone(board);
-                        MoveResult moveResult = tempBoard.makeMove(move, side);
-
-                        //It's still mins move.
-                        if (moveResult.isAdditionalMove()) {
-                            nextSide = flipSide(side);
-                            nextMax = !isMax;
-                            // System.out.println("Double Jump Found: " + nextSide + ", " + nextMax);
-                        }
-                        int tempResult = result;
-                        result = Math.min(result, minimaxITDeepening(tempBoard, depth - 1, flipSide(nextSide),
-                                alpha, beta, !nextMax));
 
-                        //New best move found.
-                        if (tempResult != result) {
-                            bestMove = move;
-                        }
-                        beta = Math.min(beta, result);
+                //Exact result, unless every move failed high. Store it.
+                storeState(board, side, bestMove, result, depth,
+                        result >= betaOrig ? TranspositionTable.LOWER : TranspositionTable.EXACT);
+                return result;
+            }
+        }
+    }
 
-                        if (beta <= alpha) {
-                            //Alpha cut off. NULL MOVE STORE.
-                            transTable.put(board, new ITState(board, null, result, depth));
-                            return result;
-                        }
-                    }
-                }
+    /**
+     * Search a child of a node in iterative deepening, after the move to it has been made.
+     * This is principal variation search. Once the first move of a node has been searched,
+     * every other move is expected to be worse, so it is searched with a zero window that only checks that.
+     * If the move turns out to be better, it is searched again with the whole window to get its score.
+     * A late quiet move can also be searched less deep first (late move reductions). Moves that late are rarely
+     * any good, so the shallow search usually shows that. If it doesn't, the move gets the full depth after all.
+     *
+     * @param board board after the move
+     * @param depth depth of the parent node
+     * @param side  side of the player at the parent node
+     * @param alpha alpha value of the parent node
+     * @param beta  beta value of the parent node
+     * @param isMax true if the parent is a max node
+     * @param ply   distance of the parent from the root
+     * @param scout     true to search with a zero window first
+     * @param reduction plies to take off the zero window search. Only used with scout.
+     * @return score of the child
+     */
+    private int searchChild(Board board, int depth, Side side, int alpha, int beta, boolean isMax, int ply,
+                            boolean scout, int reduction) {
+        if (scout && reduction > 0) {
+            int score;
+            if (isMax) {
+                score = minimaxITDeepening(board, depth - 1 - reduction, flipSide(side), alpha, alpha + 1, !isMax,
+                        ply + 1);
+            } else {
+                score = minimaxITDeepening(board, depth - 1 - reduction, flipSide(side), beta - 1, beta, !isMax,
+                        ply + 1);
+            }
+            //Still worse than what we have, so the reduced search is enough.
+            if (isMax ? score <= alpha : score >= beta) {
+                return score;
+            }
+        }
+        if (!scout) {
+            return minimaxITDeepening(board, depth - 1, flipSide(side), alpha, beta, !isMax, ply + 1);
+        }
+        int score;
+        if (isMax) {
+            score = minimaxITDeepening(board, depth - 1, flipSide(side), alpha, alpha + 1, !isMax, ply + 1);
+        } else {
+            score = minimaxITDeepening(board, depth - 1, flipSide(side), beta - 1, beta, !isMax, ply + 1);
+        }
+        if (score > alpha && score < beta) {
+            score = minimaxITDeepening(board, depth - 1, flipSide(side), alpha, beta, !isMax, ply + 1);
+        }
+        return score;
+    }
 
-                //Exact result. Store it.
-                transTable.put(board, new ITState(board, bestMove, result, depth));
-                return result;
+    /**
+     * Check if a move is quiet enough to be reduced or pruned. It must not be a jump or crown a man,
+     * must not leave the opponent a jump, and must not be a killer move.
+     *
+     * @param board board after the move
+     * @param move  move that was made
+     * @param undo  undo record of the move
+     * @param side  side that made the move
+     * @param ply   distance from the root of the board before the move
+     * @return true if the move is quiet
+     */
+    private boolean isQuietMove(Board board, int move, long undo, Side side, int ply) {
+        return !Move.isJump(move) && !Board.isPromotion(undo) && !board.hasCaptures(flipSide(side))
+                && move != ordering.getKiller(ply, 0) && move != ordering.getKiller(ply, 1);
+    }
+
+    /**
+     * Get how many plies to reduce a move by.
+     *
+     * @param depth     depth of the node
+     * @param moveCount number of the move in the node, starting at 1
+     * @param quiet     true if the move is quiet
+     * @return plies to reduce the move by, 0 for none
+     */
+    private int reduction(int depth, int moveCount, boolean quiet) {
+        if (!lateMoveReductions || !quiet || depth < LMR_MIN_DEPTH || moveCount <= LMR_MIN_MOVES) {
+            return 0;
+        }
+        //The later the move, the less likely it is to be any good.
+        return moveCount > LMR_LATE_MOVES && depth >= LMR_MIN_DEPTH + 2 ? LMR_REDUCTION + 1 : LMR_REDUCTION;
+    }
+
+    /**
+     * Count a beta cut off.
+     *
+     * @param moveCount number of moves of the node searched so far, including the one that cut off
+     */
+    private void countCutoff(int moveCount) {
+        betaCutoffs++;
+        if (moveCount == 1) {
+            firstMoveCutoffs++;
+        }
+    }
+
+    /**
+     * Set the search statistics of this thread back to 0 for a new search.
+     */
+    private void resetStats() {
+        nodes = 0;
+        quiescenceNodes = 0;
+        betaCutoffs = 0;
+        firstMoveCutoffs = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        tableStores = 0;
+    }
+
+    /**
+     * Add up the search statistics of this thread and its helpers at the end of an iteration, and keep them.
+     * The helpers are still searching, so their counts are a little behind.
+     *
+     * @param depth     depth of the iteration
+     * @param time      time the iteration took, in milliseconds
+     * @param totalTime time since the search started, in milliseconds
+     * @return statistics of the iteration
+     */
+    private SearchStats collectStats(int depth, long time, long totalTime) {
+        SearchStats stats = new SearchStats(depth, time, totalTime);
+        stats.addCounts(nodes, quiescenceNodes, betaCutoffs, firstMoveCutoffs, tableProbes, tableHits, tableStores);
+        for (AI helper : helpers) {
+            stats.addCounts(helper.nodes, helper.quiescenceNodes, helper.betaCutoffs, helper.firstMoveCutoffs,
+                    helper.tableProbes, helper.tableHits, helper.tableStores);
+        }
+        stats.finish(searchStats.isEmpty() ? null : searchStats.get(searchStats.size() - 1));
+        searchStats.add(stats);
+        return stats;
+    }
+
+    /**
+     * Count a node, and every POLL_NODES nodes check if the search has run out of time,
+     * or if the task a worker is searching for has been cancelled.
+     * Looking at the clock at every node would slow the search down.
+     *
+     * @return true if the search has to stop
+     */
+    private boolean outOfTime() {
+        nodes++;
+        if (nodes % POLL_NODES == 0
+                && (System.currentTimeMillis() >= deadline || (task != null && task.isAborted()))) {
+            stopSearch = true;
+        }
+        return stopSearch;
+    }
+
+    /**
+     * Store a searched board in the transposition table.
+     *
+     * The table keeps scores from the side to move, so A.I.s of both sides can share it.
+     *
+     * @param board board that was searched
+     * @param side  side to move on the board
+     * @param move  best move of the board, or Move.NO_MOVE
+     * @param score score of the board, from our side
+     * @param depth depth the board was searched to
+     * @param bound whether the score is exact or a lower or upper bound, from our side
+     */
+    private void storeState(Board board, Side side, int move, int score, int depth, int bound) {
+        if (!stopSearch) {
+            if (side != this.getSide()) {
+                score = -score;
+                bound = flipBound(bound);
             }
+            transTable.store(board.getKey(), move, score, depth, bound);
+            tableStores++;
         }
     }
 
+    /**
+     * Turn a bound around to the other side. A lower bound for one side is an upper bound for the other.
+     *
+     * @param bound EXACT, LOWER or UPPER
+     * @return bound from the other side
+     */
+    private static int flipBound(int bound) {
+        if (bound == TranspositionTable.LOWER) {
+            return TranspositionTable.UPPER;
+        } else if (bound == TranspositionTable.UPPER) {
+            return TranspositionTable.LOWER;
+        }
+        return bound;
+    }
+
     /**
      * Perform Quiescence search on a leaf node.
      * If there is a jump move present, we examine all jump moves until there are no more possible jumps.
      * Otherwise, we simply return the normal heuristic if the node is "quiet"
+     * A whole chain of jumps is one move, so a node never stops in the middle of a chain.
+     * While there are jumps, the board is scored with the cheap stand pat score, and jumps that can't get the
+     * score back inside the window even after winning their pieces are skipped (delta pruning).
+     * Results are kept in a small table of their own, because the same capture tails come up again and again.
+     * A node that skipped a jump only keeps a cut off found by a jump it searched.
      *
      * @param board board to check
      * @param side  side of the player
      * @param alpha alpha value
      * @param beta  beta value
      * @param isMax true if maximizing player
+     * @param ply   distance from the root, used to pick this node's move list
      * @return result of the Quiescence search
      */
-    private int quiesce(Board board, Player.Side side, int alpha, int beta, boolean isMax) {
+    private int quiesce(Board board, Player.Side side, int alpha, int beta, boolean isMax, int ply) {
+        quiescenceNodes++;
+        if (outOfTime()) {
+            return 0;
+        }
 
         //If we are on easy or normal, we will not perform a Quiescence search.
         if(this.botDifficulty == 1 || this.botDifficulty == 2){
             return heuristic(board,this.getSide());
         }
 
-        int result = heuristic(board, this.getSide());
-        ArrayList<Move> moves = board.getAllPossibleJumpMoves(side);
+        //The board is never searched any deeper here, so any result we have for it is as good as a new one.
+        int bestMove = Move.NO_MOVE;
+        long entry = quiesceTable.probe(board.getKey());
+        if (entry != 0) {
+            bestMove = TranspositionTable.getMove(entry);
+            int score = TranspositionTable.getScore(entry);
+            int bound = TranspositionTable.getBound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && score >= beta)
+                    || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+
         //No jumps, this position is quiet.
-        if (moves.isEmpty()) {
+        if (!board.hasCaptures(side)) {
+            int result = heuristic(board, this.getSide());
+            storeQuiesce(board, Move.NO_MOVE, result, TranspositionTable.EXACT);
             return result;
         }
 
+        //Stand pat. The jumps are what we are about to search, so the jump part of the heuristic is left out.
+        int standPat = standPatScore(board, this.getSide());
+        if (isMax ? standPat >= beta : standPat <= alpha) {
+            storeQuiesce(board, Move.NO_MOVE, standPat, isMax ? TranspositionTable.LOWER : TranspositionTable.UPPER);
+            return standPat;
+        }
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+        int result = standPat;
+        boolean pruned = false;
+
+        MoveList moves = moveLists[ply];
+        board.generateCaptures(side, moves);
+        //Search the biggest captures first, and the best one from the table before them.
+        ordering.orderMoves(board, moves, bestMove, side, ply);
+        bestMove = Move.NO_MOVE;
+
         //Search the jumps, let's see what we got.
         //I can seperate min and max much nicer here because result has been estimated from the Heuristic.
-        for (Move move : moves) {
-            //Make the move and figure out who's going next
-            Board tempBoard = Board.clone(board);
-            MoveResult moveResult = tempBoard.makeMove(move, side);
-            boolean nextMax = !isMax;
-            Side nextSide = flipSide(side);
-
-            //Keep the side the same. We are going again.
-            if (moveResult.isAdditionalMove()) {
-                nextMax = !nextMax;
-                nextSide = side;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            //Delta pruning. Winning every piece of the chain, and a promotion, likely still leaves us outside
+            //the window. It's only a guess: the positions and the jumps left on the board change after the chain.
+            int optimistic = MoveOrdering.captureValue(board, move) + DELTA_MARGIN;
+            if (isMax && standPat + optimistic <= alpha) {
+                result = Math.max(result, standPat + optimistic);
+                pruned = true;
+                continue;
+            }
+            if (!isMax && standPat - optimistic >= beta) {
+                result = Math.min(result, standPat - optimistic);
+                pruned = true;
+                continue;
+            }
+
+            //Make the whole chain of jumps. It's the other side's turn after it.
+            long undo = board.applyMove(move, side);
+            int score = quiesce(board, flipSide(side), alpha, beta, !isMax, ply + 1);
+            board.undoMove(undo);
+            if (stopSearch) {
+                return 0;
             }
 
             if (isMax) {
-                result = Math.max(result, quiesce(tempBoard, flipSide(nextSide), alpha, beta, !nextMax));
-                alpha = Math.max(alpha, result);
-                if (beta <= alpha) {
-                    return result;
+                if (score > result) {
+                    result = score;
+                    bestMove = move;
                 }
+                alpha = Math.max(alpha, result);
             } else {
-                result = Math.min(result, quiesce(tempBoard, flipSide(nextSide), alpha, beta, !nextMax));
-                beta = Math.min(beta, result);
-                if (beta <= alpha) {
-                    return result;
+                if (score < result) {
+                    result = score;
+                    bestMove = move;
                 }
+                beta = Math.min(beta, result);
+            }
+            if (beta <= alpha) {
+                break;
             }
+        }
 
+        int bound = TranspositionTable.EXACT;
+        if (result <= alphaOrig) {
+            bound = TranspositionTable.UPPER;
+        } else if (result >= betaOrig) {
+            bound = TranspositionTable.LOWER;
         }
+        //A skipped jump was only guessed at, so its score can't be kept as an exact score or a fail low.
+        //A cut off from a jump we did search holds whatever the skipped jumps were worth.
+        if (pruned && (bestMove == Move.NO_MOVE
+                || bound != (isMax ? TranspositionTable.LOWER : TranspositionTable.UPPER))) {
+            return result;
+        }
+        storeQuiesce(board, bestMove, result, bound);
         return result;
     }
 
+    /**
+     * Store a quiescence result, unless the search has been stopped.
+     *
+     * @param board board the result is for
+     * @param move  best jump, or Move.NO_MOVE
+     * @param score score of the board
+     * @param bound whether the score is exact or a lower or upper bound
+     */
+    private void storeQuiesce(Board board, int move, int score, int bound) {
+        if (!stopSearch) {
+            quiesceTable.store(board.getKey(), move, score, 0, bound);
+        }
+    }
+
     /**
      * Performs the heurstic function on a specified board.
      * The side parameter is the side that will be considered as the Max player.
@@ -679,6 +1795,18 @@ public class AI extends Player {
         }
     }
 
+    /**
+     * Get the number of the heuristic this A.I. scores boards with. Difficulties 3 and 4 both use heuristic 3.
+     *
+     * @return 1, 2 or 3
+     */
+    private int heuristicNumber() {
+        if (botDifficulty == 1 || botDifficulty == 2) {
+            return botDifficulty;
+        }
+        return 3;
+    }
+
     /**
      * First Heuristic Function
      * Gives a score based on the number of pieces on each side.
@@ -734,15 +1862,13 @@ public class AI extends Player {
         int score = 0;
 
         //Now we need jump moves for the maximizing side.
-        ArrayList<Move> maxJumpMoves = board.getAllPossibleJumpMoves(side);
-        for (Move jump : maxJumpMoves) {
-            int midRow = (jump.getStartRow() + jump.getEndRow()) / 2;
-            int midCol = (jump.getStartCol() + jump.getEndCol()) / 2;
-            Board.Piece midPiece = board.getPiece(midRow, midCol);
+        board.generateJumpMoves(side, maxJumpMoves);
+        for (int i = 0; i < maxJumpMoves.size(); i++) {
+            int jump = maxJumpMoves.get(i);
 
             //We jumped a king. Give it more points.
             //Like before, we give kings a score of X3 of normal piece.
-            if (midPiece == Board.Piece.BLACK_KING || midPiece == Board.Piece.RED_KING) {
+            if (board.isKing(Board.neighbour(Move.getFrom(jump), Move.getDirection(jump, 0)))) {
                 score = score + 6;
             } else {
                 score = score + 2;
@@ -756,15 +1882,13 @@ public class AI extends Player {
             opponent = Player.Side.BLACK;
         }
 
-        ArrayList<Move> minJumpMoves = board.getAllPossibleJumpMoves(opponent);
-        for (Move jump : minJumpMoves) {
-            int midRow = (jump.getStartRow() + jump.getEndRow()) / 2;
-            int midCol = (jump.getStartCol() + jump.getEndCol()) / 2;
-            Board.Piece midPiece = board.getPiece(midRow, midCol);
+        board.generateJumpMoves(opponent, minJumpMoves);
+        for (int i = 0; i < minJumpMoves.size(); i++) {
+            int jump = minJumpMoves.get(i);
 
             //We jumped a king. Give it more points.
             //Like before, we give kings a score of X3 of normal piece.
-            if (midPiece == Board.Piece.BLACK_KING || midPiece == Board.Piece.RED_KING) {
+            if (board.isKing(Board.neighbour(Move.getFrom(jump), Move.getDirection(jump, 0)))) {
                 score = score - 6;
             } else {
                 score = score - 2;
@@ -772,8 +1896,8 @@ public class AI extends Player {
         }
 
         //Now we need all additional jump moves for each side.
-        score = score + board.getAdditionalJumpMoves(board, maxJumpMoves, side);
-        score = score - board.getAdditionalJumpMoves(board, minJumpMoves, opponent);
+        score = score + board.getAdditionalJumpMoves(maxJumpMoves, side);
+        score = score - board.getAdditionalJumpMoves(minJumpMoves, opponent);
         return score;
     }
 
@@ -794,202 +1918,57 @@ public class AI extends Player {
         //H1 + H2
         int result = heuristic1(board, playerSide);
         result = result + heuristic2(board, playerSide);
-
-        //Red starts at 0, black is at 7.
-        //Player's side calculations.
-        //Check the end rows
-        //First, check the Red End Row.
-        int row = 0;
-        result = result + checkEndRow(row, board, playerSide);
-
-        //Black End Row
-        row = 7;
-        result = result + checkEndRow(row, board, playerSide);
-
-        //Check Edges: Column 0 and Column 7
-        //Ignore end corners, because we already counted those.
-        //Column 0.
-        int col = 0;
-        result = result + checkEdges(col, board, playerSide);
-
-        //Column 7.
-        col = 7;
-        result = result + checkEdges(col, board, playerSide);
-
-        //Check Territories.
-        //Black Side = [4,1-7] -> [6, 1-7]
-        //Red side = [0, 1-7= -> [3, 1-7]
-        //Check black side
-        result = result + checkTerritory(board, playerSide, true);
-
-        //Check red side
-        result = result + checkTerritory(board, playerSide, false);
-        return result;
+        return result + heuristic3Positions(board, playerSide);
     }
 
     /**
-     * Check the end rows of each side
-     * See Heuristic 3 for details.
+     * Score the board for the quiescence search to stand pat on.
+     * This is heuristic 3 without heuristic 2. The quiescence search only stands pat when there are jumps,
+     * and it searches those jumps itself, so it doesn't need to generate and score them here.
+     * Everything left is kept up to date by the board, so this is cheap.
      *
-     * @param row        row to check. 0 for Red, 7 for Black. Any other value will return -1
-     * @param board      board to use
-     * @param playerSide side of player being evaluated.
-     * @return result of the check as an int
+     * @param board board to score
+     * @param side  max player
+     * @return stand pat score as an int
      */
-    private int checkEndRow(int row, Board board, Player.Side playerSide) {
-        //Red Row.
-        int val1 = 1; //We are red and piece is red
-        int val2 = -4;//We are red and piece is black
-        int val3 = -1; //We are black and piece is red
-        int val4 = 4;//We are black and piece is black.
-        //Values defaulted to red row.
-        int result = 0;
-
-        //Error.
-        if (row != 0 && row != 7) {
-            throw new IllegalArgumentException("Error on Check End Row. Row Num = " + row);
-        }
-
-        //Black row.
-        else if (row == 7) {
-            val1 = 4;  //We are red and piece is red
-            val2 = -1; //We are red and piece is black.
-            val3 = -4; //We are black and piece is red.
-            val4 = 1; //We are black and piece is black.
-        }
-
-        //We don't care about kings because if a king is in the end row it doesn't do much.
-        //If a normal piece is in an end row however, it makes a HUGE difference.
-        for (int j = 0; j < 8; j++) {
-            Board.Piece currPiece = board.getPiece(row, j);
-            if (playerSide == Player.Side.RED) {
-                if (currPiece == Board.Piece.RED) {
-                    result = result + val1;
-                } else if (currPiece == Board.Piece.BLACK) {
-                    result = result + val2;
-                }
-            } else {
-                //Flipped.
-                if (currPiece == Board.Piece.RED) {
-                    result = result + val3;
-                } else if (currPiece == Board.Piece.BLACK) {
-                    result = result + val4;
-                }
-            }
-        }
-        return result;
+    private int standPatScore(Board board, Player.Side side) {
+        return heuristic1(board, side) + heuristic3Positions(board, side);
     }
 
     /**
-     * Check the edges of the board. These are the 2 outside columns of the board.
-     * See Heuristic 3 for details.
+     * The part of heuristic 3 that scores where the pieces are.
      *
-     * @param column     column to use. Either 0 or 7.
      * @param board      board to use
-     * @param playerSide side to check
-     * @return result of the evaluation as an int.
+     * @param playerSide player to act as max
+     * @return score of the piece positions as an int
      */
-    private int checkEdges(int column, Board board, Player.Side playerSide) {
-        int i = 1;
-        int result = 0;
-        if (column != 0 && column != 7) {
-            throw new IllegalArgumentException("Error at checkEdges. Column: " + column);
-        }
-        while (i < 7) {
-            Board.Piece currPiece = board.getPiece(i, column);
-            if (playerSide == Player.Side.RED) {
-                switch (currPiece) {
-                    case RED:
-                        result = result + 2;
-                        break;
-                    case RED_KING:
-                        result = result + 4;
-                        break;
-                    case BLACK:
-                        result = result - 2;
-                        break;
-                    case BLACK_KING:
-                        result = result - 4;
-                        break;
-                }
-            } else {
-                switch (currPiece) {
-                    case RED:
-                        result = result - 2;
-                        break;
-                    case RED_KING:
-                        result = result - 4;
-                        break;
-                    case BLACK:
-                        result = result + 2;
-                        break;
-                    case BLACK_KING:
-                        result = result + 4;
-                        break;
-                }
-            }
-            i++;
-        }
-        return result;
-    }
+    private int heuristic3Positions(Board board, Player.Side playerSide) {
+        //Red starts at 0, black is at 7.
+        //The board keeps count of the pieces on the squares we care about, so we only weigh the counts here.
+        //Everything is scored for Red, and flipped at the end if we are Black.
+        int red = 0;
 
-    /**
-     * Check the territories for both sides that doesn't include the edges and final row.
-     * If a friendly piece is in enemy territory, give it 2 points.
-     *
-     * @param board      board to use
-     * @param playerSide side of the max player
-     * @param isBlack    if its the black or red territory
-     * @return result of the territory score as an int
-     */
-    private int checkTerritory(Board board, Side playerSide, boolean isBlack) {
-        int result = 0;
-        //Black Territory
-        if (isBlack) {
-            int row = 4;
-            int endRow = 6;
-            int endCol = 6;
-
-            while (row <= endRow) {
-                int col = 1;
-
-                while (col <= endCol) {
-                    Board.Piece currPiece = board.getPiece(row, col);
-                    //Since King's can move freely, we won't count kings in this count
-                    if (playerSide == Side.RED && currPiece == Board.Piece.RED) {
-                        result = result + 2;
-                    } else if (playerSide == Side.BLACK && currPiece == Board.Piece.RED) {
-                        result = result - 2;
-                    }
-                    col++;
-                }
-                row++;
-            }
-        }
+        //Check the end rows.
+        //We don't care about kings because if a king is in the end row it doesn't do much.
+        //If a normal piece is in an end row however, it makes a HUGE difference.
+        red = red + board.getFeature(Board.RED_BACK_ROW_MEN) - 4 * board.getFeature(Board.BLACK_KING_ROW_MEN);
+        red = red + 4 * board.getFeature(Board.RED_KING_ROW_MEN) - board.getFeature(Board.BLACK_BACK_ROW_MEN);
 
-        //Red Territory
-        else {
-            int row = 1;
-            int endRow = 3;
-            int endCol = 6;
-
-            while (row <= endRow) {
-                int col = 1;
-
-                while (col <= endCol) {
-                    Board.Piece currPiece = board.getPiece(row, col);
-                    //Since King's can move freely, we won't count kings in this count.
-                    if (playerSide == Side.BLACK && currPiece == Board.Piece.BLACK) {
-                        result = result + 2;
-                    } else if (playerSide == Side.RED && currPiece == Board.Piece.BLACK) {
-                        result = result - 2;
-                    }
-                    col++;
-                }
-                row++;
-            }
+        //Check Edges: Column 0 and Column 7
+        //Ignore end corners, because we already counted those.
+        red = red + 2 * (board.getFeature(Board.RED_EDGE_MEN) - board.getFeature(Board.BLACK_EDGE_MEN));
+        red = red + 4 * (board.getFeature(Board.RED_EDGE_KINGS) - board.getFeature(Board.BLACK_EDGE_KINGS));
+
+        //Check Territories.
+        //Black Side = [4,1-7] -> [6, 1-7]
+        //Red side = [0, 1-7= -> [3, 1-7]
+        //Since King's can move freely, we won't count kings in this count
+        red = red + 2 * (board.getFeature(Board.RED_TERRITORY_MEN) - board.getFeature(Board.BLACK_TERRITORY_MEN));
+
+        if (playerSide == Player.Side.RED) {
+            return red;
         }
-        return result;
+        return -red;
     }
 
     /**
@@ -1020,38 +1999,141 @@ public class AI extends Player {
     }
 
     public void setBotDifficulty(int botDifficulty) {
+        int oldHeuristic = heuristicNumber();
         this.botDifficulty = botDifficulty;
+        //Each difficulty scores boards differently, so the old quiescence results are no good.
+        if (quiesceTable != null) {
+            quiesceTable.clear();
+        }
+        //The transposition table may be shared with A.I.s still using the old heuristic, so it's left to them.
+        //A new table is made for the next search.
+        if (heuristicNumber() != oldHeuristic) {
+            transTable = null;
+        }
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
     }
 
-    public int getJumpCol() {
-        return jumpCol;
+    public boolean isPonder() {
+        return ponder;
     }
 
-    public void setJumpCol(int jumpCol) {
-        this.jumpCol = jumpCol;
+    /**
+     * Think on the opponent's time. Only the Harder A.I. ponders.
+     *
+     * @param ponder true to ponder after every move
+     */
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+        if (!ponder) {
+            stopPondering();
+        }
     }
 
-    public int getJumpRow() {
-        return jumpRow;
+    public boolean isLateMoveReductions() {
+        return lateMoveReductions;
     }
 
-    public void setJumpRow(int jumpRow) {
-        this.jumpRow = jumpRow;
+    public void setLateMoveReductions(boolean lateMoveReductions) {
+        this.lateMoveReductions = lateMoveReductions;
     }
 
-    public long getTimeLimit() {
-        return timeLimit;
+    public boolean isFutilityPruning() {
+        return futilityPruning;
     }
 
-    public void setTimeLimit(long timeLimit) {
-        this.timeLimit = timeLimit;
+    public void setFutilityPruning(boolean futilityPruning) {
+        this.futilityPruning = futilityPruning;
     }
 
-    public HashMap<Board, ITState> getTransTable() {
+    public ProbCut getProbCut() {
+        return probCut;
+    }
+
+    /**
+     * Turn on ProbCut for iterative deepening.
+     *
+     * @param probCut fitted ProbCut parameters, or null to turn it off
+     */
+    public void setProbCut(ProbCut probCut) {
+        this.probCut = probCut;
+    }
+
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
+
+    /**
+     * Play on a game clock. Each move gets its time from the clock instead of the time limit.
+     *
+     * @param timeControl game clock, or null to go back to the time limit
+     */
+    public void setTimeControl(TimeControl timeControl) {
+        this.timeControl = timeControl;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Error on setThreads. Threads = " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public TranspositionTable getTransTable() {
         return transTable;
     }
 
-    public void setTransTable(HashMap<Board, ITState> transTable) {
+    public MoveList getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    /**
+     * Get the statistics of the last iterative deepening search, one for each finished iteration.
+     *
+     * @return search statistics, in order of depth
+     */
+    public ArrayList<SearchStats> getSearchStats() {
+        return searchStats;
+    }
+
+    public ArrayList<AnalysisLine> getAnalysisLines() {
+        return analysisLines;
+    }
+
+    public int getMultiPV() {
+        return multiPV;
+    }
+
+    /**
+     * Get exact scores and lines for the best root moves of every iterative deepening search, not just the best.
+     *
+     * @param multiPV number of root moves to keep, 1 for a normal search
+     */
+    public void setMultiPV(int multiPV) {
+        if (multiPV < 1) {
+            throw new IllegalArgumentException("Error on setMultiPV. Multi PV = " + multiPV);
+        }
+        this.multiPV = multiPV;
+    }
+
+    /**
+     * Search with a transposition table, which can be shared with other A.I.s.
+     *
+     * @param transTable table to use
+     * @throws IllegalArgumentException if the table holds scores from a different heuristic
+     */
+    public void setTransTable(TranspositionTable transTable) {
+        transTable.claim(heuristicNumber());
         this.transTable = transTable;
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+/**
+ * One line of a multi-PV search: a root move, its score and the best line of play that follows it.
+ * The score is exact, from the A.I.'s side, at the depth the line was searched to.
+ *
+ * @version 10/17/2026
+ */
+public class AnalysisLine {
+    private int move;
+    private int score;
+    private int depth;
+    private MoveList principalVariation;
+
+    /**
+     * Constructor for the AnalysisLine
+     *
+     * @param move               packed root move
+     * @param score              exact score of the move
+     * @param depth              depth the move was searched to
+     * @param principalVariation best line of play, starting with the move
+     */
+    public AnalysisLine(int move, int score, int depth, MoveList principalVariation) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.principalVariation = principalVariation;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append(Move.toString(move)).append(" (score ").append(score).append(", depth ").append(depth)
+                .append("):");
+        for (int i = 0; i < principalVariation.size(); i++) {
+            line.append(' ').append(Move.toString(principalVariation.get(i)));
+        }
+        return line.toString();
+    }
+
+    /*GETTERS AND SETTERS*/
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public MoveList getPrincipalVariation() {
+        return principalVariation;
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -20,45 +21,178 @@ public class Board {
         BLACK, RED, BLACK_KING, RED_KING, EMPTY
     }
 
-    private Piece[][] board;
-    private int numRed;
-    private int numBlack;
-    private int numRedKing;
-    private int numBlackKing;
     private int score;
     private boolean useX;
+
+    //Bitboards for the 32 playable squares.
+    //Square i is at row i / 4. Even rows use the even columns, odd rows use the odd columns.
+    //So square 0 is A0, square 4 is B1 and square 31 is H7.
+    private int blackPieces;
+    private int redPieces;
+    private int kings;
+    //Side to move and the square of a piece that has to keep jumping (-1 if none).
+    //Both are part of the position, so both are part of the key.
+    private Player.Side turn;
+    private int pendingJump;
+    //64 bit Zobrist key of this position. Kept up to date by applyMove and undoMove.
+    private long key;
+    //Running counts of the evaluation features, indexed by the feature constants below.
+    //Kept up to date by applyMove and undoMove. The extra last slot counts pieces that are not in any feature.
+    private int[] features = new int[FEATURE_COUNT + 1];
+    //Reusable list for checking a jump chain in isLegalMove.
+    private MoveList chainMoves = new MoveList();
+
+    //Masks used by the shift-and-mask move generators.
+    private static final int EVEN_ROWS = 0x0F0F0F0F;
+    private static final int ODD_ROWS = 0xF0F0F0F0;
+    //Squares that are not in column A or column H. Those are the only squares that can shift by 3 or 5.
+    private static final int NOT_EDGE_3 = EVEN_ROWS & ~0x11111111;
+    private static final int NOT_EDGE_5 = ODD_ROWS & ~0x88888888;
+    //Squares that are not in the two left (A, B) or two right (G, H) columns. Needed for jumps.
+    private static final int NOT_LEFT_2 = ~0x11111111;
+    private static final int NOT_RIGHT_2 = ~0x88888888;
+    //Starting positions.
+    private static final int RED_START = 0x00000FFF;
+    private static final int BLACK_START = 0xFFF00000;
+
+    //Directions a piece can move in. Up is towards row 7, which is the way Red men move.
+    public static final int UP_LEFT = 0;
+    public static final int UP_RIGHT = 1;
+    public static final int DOWN_LEFT = 2;
+    public static final int DOWN_RIGHT = 3;
+    //Rows a man is crowned on. Black is crowned on row 0, Red on row 7.
+    private static final int BLACK_KING_ROW = 0x0000000F;
+    private static final int RED_KING_ROW = 0xF0000000;
+
+    //Square topology, built once when the class is loaded so the generators never work out coordinates.
+    //Indexed by [square][direction]. Squares are -1 and bits are 0 where the step would leave the board.
+    private static final int[][] NEIGHBOURS = new int[32][4];
+    private static final int[][] JUMP_TARGETS = new int[32][4];
+    //Bit of the square a jump goes over, and bit of the square it lands on.
+    private static final int[][] JUMPED_BITS = new int[32][4];
+    private static final int[][] LANDING_BITS = new int[32][4];
+
+    //Evaluation features. Each one counts the pieces of one kind on one group of squares.
+    //Back row men are men still on the row they started from, king row men are men on the row they crown on.
+    public static final int RED_BACK_ROW_MEN = 0;
+    public static final int RED_KING_ROW_MEN = 1;
+    public static final int BLACK_BACK_ROW_MEN = 2;
+    public static final int BLACK_KING_ROW_MEN = 3;
+    //Pieces in column A or H, not counting the end rows.
+    public static final int RED_EDGE_MEN = 4;
+    public static final int RED_EDGE_KINGS = 5;
+    public static final int BLACK_EDGE_MEN = 6;
+    public static final int BLACK_EDGE_KINGS = 7;
+    //Men in the other side's half of the board, not counting the edges and end rows.
+    public static final int RED_TERRITORY_MEN = 8;
+    public static final int BLACK_TERRITORY_MEN = 9;
+    public static final int FEATURE_COUNT = 10;
+    //Feature of a piece type on a square. Indexed by [square][piece type], see pieceType.
+    private static final int[][] FEATURE_TABLE = new int[32][4];
+
+    static {
+        init_topology();
+        init_features();
+    }
+
+    //Undo record fields. The low 32 bits hold the packed move. See applyMove.
+    //One captured king bit for each jump of the move.
+    private static final int UNDO_CAPTURED_KING_SHIFT = 32;
+    private static final long UNDO_PROMOTED = 1L << 41;
+    private static final long UNDO_ADDITIONAL_MOVE = 1L << 42;
+    private static final long UNDO_RED_TURN = 1L << 43;
+    private static final int UNDO_PENDING_SHIFT = 44;
+
+    private static final long ZOBRIST_SEED = 0x5EEDC4EC3E25L;
+    //Zobrist keys for RED to move and for each square a piece can be stuck jumping from.
+    static private long zobristRedTurn;
+    static private long[] zobristPending;
     //Static Zobrist table usd for hashing. All board use this same table.
-    static private int[][][] zobristTable = init_zobrist();
+    //Indexed by [square][piece type], see pieceType.
+    static private long[][] zobristTable = init_zobrist();
 
     /**
      * Initialize the Zobrist Table used for hashing
+     * The table is made from a fixed seed so every run gives a board the same key.
+     * That lets a transposition table saved to a file be used again by another run.
      *
      * @return zobristTable
      */
-    private static int[][][] init_zobrist() {
-        Random rand = new Random();
+    private static long[][] init_zobrist() {
+        Random rand = new Random(ZOBRIST_SEED);
 
-        zobristTable = new int[8][8][4];
+        zobristTable = new long[32][4];
+        zobristPending = new long[32];
 
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                for (int r = 0; r < 4; r++)
-                    zobristTable[i][j][r] = rand.nextInt(Integer.MAX_VALUE);
-            }
+        for (int i = 0; i < 32; i++) {
+            for (int r = 0; r < 4; r++)
+                zobristTable[i][r] = rand.nextLong();
+            zobristPending[i] = rand.nextLong();
         }
+        zobristRedTurn = rand.nextLong();
 
         return zobristTable;
     }
 
+    /**
+     * Initialize the square topology tables used by the move generators.
+     */
+    private static void init_topology() {
+        for (int square = 0; square < 32; square++) {
+            int row = squareRow(square);
+            int col = squareCol(square);
+            for (int direction = UP_LEFT; direction <= DOWN_RIGHT; direction++) {
+                int rowStep = direction < DOWN_LEFT ? 1 : -1;
+                int colStep = (direction & 1) == 0 ? -1 : 1;
+                int next = toSquare(row + rowStep, col + colStep);
+                int land = toSquare(row + 2 * rowStep, col + 2 * colStep);
+                NEIGHBOURS[square][direction] = next;
+                JUMP_TARGETS[square][direction] = land;
+                JUMPED_BITS[square][direction] = land < 0 ? 0 : 1 << next;
+                LANDING_BITS[square][direction] = land < 0 ? 0 : 1 << land;
+            }
+        }
+    }
+
+    /**
+     * Initialize the table of which feature a piece on a square counts towards.
+     */
+    private static void init_features() {
+        for (int square = 0; square < 32; square++) {
+            int row = squareRow(square);
+            int col = squareCol(square);
+            boolean edge = col == 0 || col == 7;
+            for (int type = 0; type < 4; type++) {
+                FEATURE_TABLE[square][type] = FEATURE_COUNT;
+            }
+
+            //Red starts at row 0, black at row 7. Kings in the end rows don't count.
+            if (row == 0) {
+                FEATURE_TABLE[square][0] = RED_BACK_ROW_MEN;
+                FEATURE_TABLE[square][2] = BLACK_KING_ROW_MEN;
+            } else if (row == 7) {
+                FEATURE_TABLE[square][0] = RED_KING_ROW_MEN;
+                FEATURE_TABLE[square][2] = BLACK_BACK_ROW_MEN;
+            } else if (edge) {
+                FEATURE_TABLE[square][0] = RED_EDGE_MEN;
+                FEATURE_TABLE[square][1] = RED_EDGE_KINGS;
+                FEATURE_TABLE[square][2] = BLACK_EDGE_MEN;
+                FEATURE_TABLE[square][3] = BLACK_EDGE_KINGS;
+            } else if (row >= 4) {
+                //Black territory is rows 4 - 6.
+                FEATURE_TABLE[square][0] = RED_TERRITORY_MEN;
+            } else {
+                //Red territory is rows 1 - 3.
+                FEATURE_TABLE[square][2] = BLACK_TERRITORY_MEN;
+            }
+        }
+    }
+
     /**
      * Default Constructor
      */
     public Board() {
         createDefaultBoard();
-        numRed = 12;
-        numRedKing = 0;
-        numBlack = 12;
-        numBlackKing = 0;
         useX = false;
     }
 
@@ -68,9 +202,7 @@ public class Board {
      * @param board board state to intialize to
      */
     public Board(Piece[][] board) {
-
-        this.board = board;
-        countPieces();
+        setBoard(board);
     }
 
 
@@ -82,10 +214,6 @@ public class Board {
      */
     public Board(boolean useX) {
         createDefaultBoard();
-        numRed = 12;
-        numRedKing = 0;
-        numBlack = 12;
-        numBlackKing = 0;
         this.useX = useX;
     }
 
@@ -96,82 +224,177 @@ public class Board {
      * @return new board
      */
     public static Board clone(Board board) {
-        Piece[][] newBoard = new Piece[board.getBoard().length][board.getBoard()[0].length];
-        //Copy the array manually, clone just returns a reference to the same objects.
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                newBoard[i][j] = board.getBoard()[i][j];
-            }
-        }
-        return new Board(newBoard);
+        Board newBoard = new Board();
+        newBoard.blackPieces = board.blackPieces;
+        newBoard.redPieces = board.redPieces;
+        newBoard.kings = board.kings;
+        newBoard.turn = board.turn;
+        newBoard.pendingJump = board.pendingJump;
+        newBoard.key = board.key;
+        System.arraycopy(board.features, 0, newBoard.features, 0, board.features.length);
+        newBoard.useX = board.useX;
+        return newBoard;
     }
 
     /**
      * Create the default starting checkers board.
+     * Red fills rows 0 - 2 and Black fills rows 5 - 7. Black moves first.
      */
     private void createDefaultBoard() {
-        Piece[][] board = new Piece[8][8];
+        redPieces = RED_START;
+        blackPieces = BLACK_START;
+        kings = 0;
+        turn = Player.Side.BLACK;
+        pendingJump = -1;
+        key = computeKey();
+        computeFeatures();
+    }
 
-        for (int i = 0; i < 8; i++) {
-            int j;
-            //Red Pieces
-            if (i == 0 || i == 2) {
-                j = 0;
-                while (j < 8) {
-                    if (j % 2 == 0) {
-                        board[i][j] = Piece.RED;
-                    } else {
-                        board[i][j] = Piece.EMPTY;
-                    }
-                    j++;
-                }
-            } else if (i == 1) {
-                j = 0;
-                while (j < 8) {
-                    if (j % 2 == 1) {
-                        board[i][j] = Piece.RED;
-                    } else {
-                        board[i][j] = Piece.EMPTY;
-                    }
-                    j++;
-                }
-            }
+    /**
+     * Compute the Zobrist key of this position from scratch.
+     * applyMove and undoMove keep the key up to date, so this is only needed when the whole board is set.
+     *
+     * @return key of the position
+     */
+    private long computeKey() {
+        long result = 0;
+
+        //Only visit the occupied squares.
+        int occupied = blackPieces | redPieces;
+        while (occupied != 0) {
+            int square = Integer.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            result ^= zobristTable[square][pieceType(1 << square)];
+        }
+        if (turn == Player.Side.RED) {
+            result ^= zobristRedTurn;
+        }
+        if (pendingJump >= 0) {
+            result ^= zobristPending[pendingJump];
+        }
+        return result;
+    }
 
-            //Black Pieces
-            else if (i == 5 || i == 7) {
-                j = 0;
-                while (j < 8) {
-                    if (j % 2 == 1) {
-                        board[i][j] = Piece.BLACK;
-                    } else {
-                        board[i][j] = Piece.EMPTY;
-                    }
-                    j++;
-                }
-            } else if (i == 6) {
-                j = 0;
-                while (j < 8) {
-                    if (j % 2 == 0) {
-                        board[i][j] = Piece.BLACK;
-                    } else {
-                        board[i][j] = Piece.EMPTY;
-                    }
-                    j++;
-                }
-            } else {
-                j = 0;
-                while (j < 8) {
-                    board[i][j] = Piece.EMPTY;
-                    j++;
-                }
+    /**
+     * Count the evaluation features of this board from scratch.
+     */
+    private void computeFeatures() {
+        Arrays.fill(features, 0);
+        int occupied = blackPieces | redPieces;
+        while (occupied != 0) {
+            int square = Integer.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            features[FEATURE_TABLE[square][pieceType(1 << square)]]++;
+        }
+    }
+
+    /**
+     * Get the type of the piece on a square: 0 red, 1 red king, 2 black, 3 black king.
+     *
+     * @param bit bit of an occupied square
+     * @return piece type
+     */
+    private int pieceType(int bit) {
+        int type = (redPieces & bit) != 0 ? 0 : 2;
+        if ((kings & bit) != 0) {
+            type++;
+        }
+        return type;
+    }
+
+    /**
+     * Change the side to move and the pending jump square, keeping the key up to date.
+     *
+     * @param newTurn    side to move
+     * @param newPending square of the piece that must keep jumping, or -1
+     */
+    private void setTurn(Player.Side newTurn, int newPending) {
+        if (newTurn != turn) {
+            key ^= zobristRedTurn;
+            turn = newTurn;
+        }
+        if (newPending != pendingJump) {
+            if (pendingJump >= 0) {
+                key ^= zobristPending[pendingJump];
             }
+            if (newPending >= 0) {
+                key ^= zobristPending[newPending];
+            }
+            pendingJump = newPending;
+        }
+    }
+
+    /**
+     * Convert a row and column to the index of its playable square.
+     *
+     * @param row row of the square
+     * @param col column of the square
+     * @return square index 0 - 31, or -1 if the square is off the board or can never hold a piece.
+     */
+    static int toSquare(int row, int col) {
+        if (row < 0 || row > 7 || col < 0 || col > 7 || ((row + col) & 1) != 0) {
+            return -1;
         }
-        this.board = board;
+        return (row << 2) | (col >> 1);
+    }
+
+    /**
+     * Get the row of a playable square.
+     *
+     * @param square square index
+     * @return row of the square
+     */
+    static int squareRow(int square) {
+        return square >> 2;
+    }
+
+    /**
+     * Get the column of a playable square.
+     *
+     * @param square square index
+     * @return column of the square
+     */
+    static int squareCol(int square) {
+        return ((square & 3) << 1) | ((square >> 2) & 1);
+    }
+
+    /**
+     * Get the square diagonally next to a square.
+     *
+     * @param square    square index
+     * @param direction direction to look in
+     * @return neighbouring square, or -1 if it is off the board
+     */
+    static int neighbour(int square, int direction) {
+        return NEIGHBOURS[square][direction];
+    }
+
+    /**
+     * Get the square a jump from a square lands on.
+     *
+     * @param square    square index
+     * @param direction direction of the jump
+     * @return landing square, or -1 if it is off the board
+     */
+    static int jumpTarget(int square, int direction) {
+        return JUMP_TARGETS[square][direction];
+    }
+
+    /**
+     * Get the squares a man of a side is crowned on.
+     *
+     * @param side side of the man
+     * @return bitboard of the side's king row
+     */
+    static int kingRow(Player.Side side) {
+        return side == Player.Side.BLACK ? BLACK_KING_ROW : RED_KING_ROW;
     }
 
     /**
      * Make a move on the board with the specified move with the specified player
      * Returns a MoveResult with information about the move that was made.
+     * This checks the move and explains what is wrong with it, so it is meant for moves typed in by a player.
+     * Moves that come from the move generator can use applyMove instead.
      *
      * @param move move to make
      * @param side side to move
@@ -205,79 +428,28 @@ public class Board {
             }
         }
 
-        //Let's pull out our values
-        //NOTE WE USE ROW,COL HERE INSTEAD OF COL,ROW THAT'S STORED IN A MOVE
-        int startRow = move.getStartRow();
-        int startCol = move.getStartCol();
-        int endRow = move.getEndRow();
-        int endCol = move.getEndCol();
-
         //Check if this move is valid.
         if (isValidMove(move, side)) {
-            //We need to verify: Is it a normal move or a jump move?
-            boolean jump = move.isJumpMove();
-            if (!jump) {
-                board[startRow][startCol] = Piece.EMPTY;
-                board[endRow][endCol] = checkPiece;
-            } else {
-                board[startRow][startCol] = Piece.EMPTY;
-                board[endRow][endCol] = checkPiece;
-
-                //So we jumped over a piece, where is that piece we jumped over?
-                //Mid point: x1 + x2 / 2
-                int midRow = (startRow + endRow) / 2;
-                int midCol = (startCol + endCol) / 2;
-                Piece midPiece = getPiece(midRow, midCol);
-                //Check what the piece is
-                switch (midPiece) {
-                    case RED:
-                        numRed--;
-                        break;
-                    case RED_KING:
-                        numRedKing--;
-                        break;
-                    case BLACK:
-                        numBlack--;
-                        break;
-                    case BLACK_KING:
-                        numBlackKing--;
-                        break;
-                }
-                board[midRow][midCol] = Piece.EMPTY;
-            }
-
-            //Now let's check if the move turned a piece into a king.
-            if (endRow == 0 && side == Player.Side.BLACK && board[endRow][endCol] == Piece.BLACK) {
-                board[endRow][endCol] = Piece.BLACK_KING;
-                numBlackKing++;
-                numBlack--;
-            } else if (endRow == board.length - 1 && side == Player.Side.RED && board[endRow][endCol] == Piece.RED) {
-                board[endRow][endCol] = Piece.RED_KING;
-                numRedKing++;
-                numRed--;
-            }
+            long undo = applyMove(move, side);
 
             //If the player made a jump move, we need to check to see if it is still the player's turn.
             boolean additionalMove = false;
             String message = "Move completed.";
-            if (jump) {
-                ArrayList<Move> jumpMoves = getPossibleJumpMoves(endRow, endCol, side);
-                if (!jumpMoves.isEmpty()) {
-                    additionalMove = true;
-                    message = message + " Player must make another move.";
-                }
+            if (isAdditionalMove(undo)) {
+                additionalMove = true;
+                message = message + " Player must make another move.";
             }
             return new MoveResult(true, message, additionalMove, false);
         } else {
             //It's possible a player cannot move.
             String message;
             if (side == Player.Side.BLACK) {
-                if (getAllPossibleMoves(Player.Side.BLACK).isEmpty()) {
+                if (!hasAnyMove(Player.Side.BLACK)) {
                     message = "Black cannot move, Red Wins!";
                     return new MoveResult(false, message, false, true);
                 }
             } else {
-                if (getAllPossibleMoves(Player.Side.RED).isEmpty()) {
+                if (!hasAnyMove(Player.Side.RED)) {
                     message = "Red cannot move. Black wins!";
                     return new MoveResult(false, message, false, true);
                 }
@@ -289,70 +461,218 @@ public class Board {
     }
 
     /**
-     * Checks to make sure that a specified move is valid.
-     * If the player can make a jump move and the move is not a valid jump move, then the move cannot be made.
+     * Apply a move to this board without checking it, and return a record that can undo it.
      *
-     * @param move move to check
-     * @return true if move is valid
+     * @param move move to make
+     * @param side side to move
+     * @return undo record for undoMove
+     * @see #applyMove(int, Player.Side)
      */
-    private boolean isValidMove(Move move, Player.Side side) {
-        //Let's see if there's a jump move first. If so, then the input move MUST be a jump move.
-        //While this might seem redundent, I need a way to double check this.
-        ArrayList<Move> possibleJumps = getAllPossibleJumpMoves(side);
-        if (!possibleJumps.isEmpty()) {
-            if (move.isJumpMove()) {
-                if (possibleJumps.contains(move)) {
-                    return true;
-                } else {
-                    return false;
-                }
+    public long applyMove(Move move, Player.Side side) {
+        return applyMove(move.pack(), side);
+    }
+
+    /**
+     * Apply a packed move to this board without checking it, and return a record that can undo it.
+     * The move must be one that was generated for this side on this board.
+     * This is what the search uses so it can work on one board instead of cloning a board for every child.
+     * A chain of jumps is made all at once: every jumped piece is removed, and the piece is crowned if any
+     * jump landed in its king row.
+     * <p>
+     * Undo record layout: the low 32 bits are the packed move,
+     * then one captured king flag per jump, the promoted and additional move flags,
+     * then the side to move and pending jump from before the move.
+     *
+     * @param move packed move to make
+     * @param side side to move
+     * @return undo record for undoMove
+     */
+    public long applyMove(int move, Player.Side side) {
+        int start = Move.getFrom(move);
+        int end = Move.getTo(move);
+        int from = 1 << start;
+        int to = 1 << end;
+        long undo = (move & 0xFFFFFFFFL) | ((long) (pendingJump + 1) << UNDO_PENDING_SHIFT);
+        if (turn == Player.Side.RED) {
+            undo |= UNDO_RED_TURN;
+        }
+        //Every square the piece lands on. A man is crowned if any of them is in its king row.
+        int path = to;
+
+        //Take every jumped piece off the board.
+        int jumps = Move.getJumps(move);
+        int square = start;
+        for (int i = 0; i < jumps; i++) {
+            int direction = Move.getDirection(move, i);
+            int jumped = NEIGHBOURS[square][direction];
+            int mid = JUMPED_BITS[square][direction];
+            int type = pieceType(mid);
+            key ^= zobristTable[jumped][type];
+            features[FEATURE_TABLE[jumped][type]]--;
+            if ((kings & mid) != 0) {
+                kings ^= mid;
+                undo |= 1L << (UNDO_CAPTURED_KING_SHIFT + i);
+            }
+            if (side == Player.Side.BLACK) {
+                redPieces ^= mid;
             } else {
-                return false;
+                blackPieces ^= mid;
             }
+            path |= LANDING_BITS[square][direction];
+            square = JUMP_TARGETS[square][direction];
         }
-        //Otherwise, let's check all the other moves.
-        else {
-            ArrayList<Move> possibleMoves =
-                    getPossiblePieceMoves(move.getStartRow(), move.getStartCol(), side);
-            if (possibleMoves.contains(move)) {
-                return true;
+
+        //Move the piece. Kings take their king bit with them.
+        //A king can jump in a circle and end up where it started.
+        int type = pieceType(from);
+        key ^= zobristTable[start][type];
+        features[FEATURE_TABLE[start][type]]--;
+        if (start != end) {
+            if (side == Player.Side.BLACK) {
+                blackPieces ^= from | to;
             } else {
-                return false;
+                redPieces ^= from | to;
+            }
+            if ((kings & from) != 0) {
+                kings ^= from | to;
             }
         }
+
+        //Now let's check if the move turned a piece into a king.
+        if ((kings & to) == 0 && (path & kingRow(side)) != 0) {
+            kings |= to;
+            undo |= UNDO_PROMOTED;
+        }
+        type = pieceType(to);
+        key ^= zobristTable[end][type];
+        features[FEATURE_TABLE[end][type]]++;
+
+        //A jump that can keep jumping means it is still this side's turn.
+        //Generated chains always jump as far as they can, so this only happens to single jumps from the UI.
+        if (jumps > 0 && getJumpers(to, side) != 0) {
+            undo |= UNDO_ADDITIONAL_MOVE;
+            setTurn(side, end);
+        } else {
+            setTurn(side == Player.Side.BLACK ? Player.Side.RED : Player.Side.BLACK, -1);
+        }
+        return undo;
     }
 
     /**
-     * Count the pieces of this current board and update the piece counts.
+     * Undo a move that was made with applyMove.
+     * Moves must be undone in the reverse order they were applied.
+     *
+     * @param undo undo record returned by applyMove
      */
-    private void countPieces() {
-        int redTot = 0;
-        int redKingTot = 0;
-        int blackTot = 0;
-        int blackKingTot = 0;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                Piece piece = board[i][j];
-                switch (piece) {
-                    case RED:
-                        redTot++;
-                        break;
-                    case RED_KING:
-                        redKingTot++;
-                        break;
-                    case BLACK:
-                        blackTot++;
-                        break;
-                    case BLACK_KING:
-                        blackKingTot++;
-                        break;
-                }
+    public void undoMove(long undo) {
+        int move = (int) undo;
+        int start = Move.getFrom(move);
+        int end = Move.getTo(move);
+        int from = 1 << start;
+        int to = 1 << end;
+
+        int type = pieceType(to);
+        key ^= zobristTable[end][type];
+        features[FEATURE_TABLE[end][type]]--;
+        if ((undo & UNDO_PROMOTED) != 0) {
+            kings ^= to;
+        }
+        boolean black = (blackPieces & to) != 0;
+        if (start != end) {
+            if (black) {
+                blackPieces ^= from | to;
+            } else {
+                redPieces ^= from | to;
             }
+            if ((kings & to) != 0) {
+                kings ^= from | to;
+            }
+        }
+        type = pieceType(from);
+        key ^= zobristTable[start][type];
+        features[FEATURE_TABLE[start][type]]++;
+
+        //Put the jumped pieces back.
+        int jumps = Move.getJumps(move);
+        int square = start;
+        for (int i = 0; i < jumps; i++) {
+            int direction = Move.getDirection(move, i);
+            int jumped = NEIGHBOURS[square][direction];
+            int mid = JUMPED_BITS[square][direction];
+            if (black) {
+                redPieces |= mid;
+            } else {
+                blackPieces |= mid;
+            }
+            if ((undo & (1L << (UNDO_CAPTURED_KING_SHIFT + i))) != 0) {
+                kings |= mid;
+            }
+            type = pieceType(mid);
+            key ^= zobristTable[jumped][type];
+            features[FEATURE_TABLE[jumped][type]]++;
+            square = JUMP_TARGETS[square][direction];
         }
-        this.numRed = redTot;
-        this.numRedKing = redKingTot;
-        this.numBlack = blackTot;
-        this.numBlackKing = blackKingTot;
+
+        setTurn((undo & UNDO_RED_TURN) != 0 ? Player.Side.RED : Player.Side.BLACK,
+                (int) ((undo >>> UNDO_PENDING_SHIFT) & 63) - 1);
+    }
+
+    /**
+     * Check an undo record to see if the side that moved must make another jump.
+     *
+     * @param undo undo record returned by applyMove
+     * @return true if the same side moves again
+     */
+    public static boolean isAdditionalMove(long undo) {
+        return (undo & UNDO_ADDITIONAL_MOVE) != 0;
+    }
+
+    /**
+     * Get the number of pieces a move captured from an undo record.
+     *
+     * @param undo undo record returned by applyMove
+     * @return number of pieces captured
+     */
+    public static int getCaptured(long undo) {
+        return Move.getJumps((int) undo);
+    }
+
+    /**
+     * Get the number of kings a move captured from an undo record.
+     *
+     * @param undo undo record returned by applyMove
+     * @return number of kings captured
+     */
+    public static int getCapturedKings(long undo) {
+        return Long.bitCount((undo >>> UNDO_CAPTURED_KING_SHIFT) & ((1L << Move.MAX_JUMPS) - 1));
+    }
+
+    /**
+     * Check an undo record to see if the move crowned a piece.
+     *
+     * @param undo undo record returned by applyMove
+     * @return true if the piece that moved became a king
+     */
+    public static boolean isPromotion(long undo) {
+        return (undo & UNDO_PROMOTED) != 0;
+    }
+
+    /**
+     * Checks to make sure that a specified move is valid.
+     * If the player can make a jump move and the move is not a valid jump move, then the move cannot be made.
+     *
+     * @param move move to check
+     * @return true if move is valid
+     */
+    private boolean isValidMove(Move move, Player.Side side) {
+        int packed = move.pack();
+        if (packed == Move.NO_MOVE) {
+            return false;
+        }
+        //If the player can jump, only jumps are generated, so a normal move won't be found.
+        MoveList possibleMoves = new MoveList();
+        generateSteps(side, possibleMoves);
+        return possibleMoves.contains(packed);
     }
 
     /**
@@ -364,53 +684,55 @@ public class Board {
     private boolean checkGameOver() {
         if (this.getTotalRed() == 0 || this.getTotalBlack() == 0) {
             return true;
-        } else if (this.getAllPossibleMoves(Player.Side.RED).isEmpty()) {
+        } else if (!this.hasAnyMove(Player.Side.RED)) {
             return true;
-        } else if (this.getAllPossibleMoves(Player.Side.BLACK).isEmpty()) {
+        } else if (!this.hasAnyMove(Player.Side.BLACK)) {
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Check if a side has at least one legal move.
+     * This doesn't generate any moves, it only checks if any piece has somewhere to go.
+     *
+     * @param side side to use
+     * @return true if the side can move
+     */
+    public boolean hasAnyMove(Player.Side side) {
+        int pieces = movablePieces(side);
+        return getSteppers(pieces, side) != 0 || getJumpers(pieces, side) != 0;
+    }
+
     /**
      * Generate and return the list of all possible moves for a specific side
+     * These are single steps, the way a player enters them. A chain of jumps is one jump at a time.
      *
      * @param side side to use
      * @return ArrayList of all possible moves for the side
      */
     public ArrayList<Move> getAllPossibleMoves(Player.Side side) {
-        ArrayList<Move> moves = new ArrayList<Move>();
-        Piece normal;
-        Piece king;
+        MoveList moves = new MoveList();
+        generateSteps(side, moves);
+        return toMoveObjects(moves);
+    }
 
-        moves.addAll(getAllPossibleJumpMoves(side));
-        //If there is any jump moves, these are the only possible moves.
-        if (!moves.isEmpty()) {
-            return moves;
-        }
+    /**
+     * Generate the single steps a side can make next into a move list.
+     * Jumps are single jumps, and if there are any jumps only the jumps are generated.
+     *
+     * @param side  side to use
+     * @param moves list to add the packed moves to
+     */
+    private void generateSteps(Player.Side side, MoveList moves) {
+        int pieces = movablePieces(side);
 
-        if (side == Player.Side.BLACK) {
-            normal = Piece.BLACK;
-            king = Piece.BLACK_KING;
-        } else {
-            normal = Piece.RED;
-            king = Piece.RED_KING;
-        }
-
-        //Just brute force it.
-        //For every single square, if a piece is there, get all of their possible moves.
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                Piece currPiece = getPiece(i, j);
-                if (currPiece == normal || currPiece == king) {
-                    if (getPossiblePieceMoves(i, j, side) != null) {
-                        moves.addAll(getPossiblePieceMoves(i, j, side));
-                    }
-                }
-            }
+        addJumpMoves(pieces, side, moves);
+        //If there is any jump moves, these are the only possible moves.
+        if (moves.isEmpty()) {
+            addNormalMoves(pieces, side, moves);
         }
-        return moves;
     }
 
     /**
@@ -432,235 +754,443 @@ public class Board {
             return null;
         }
 
-        ArrayList<Move> moves = new ArrayList<Move>();
-        int newRow = 0;
+        MoveList moves = new MoveList();
+        int piece = ownPieces(side) & (1 << toSquare(row, col));
+
+        addJumpMoves(piece, side, moves);
+        if (moves.isEmpty()) {
+            addNormalMoves(piece, side, moves);
+        }
+        return toMoveObjects(moves);
+    }
 
-        moves.addAll(getPossibleJumpMoves(row, col, side));
+    /**
+     * Generate and return the list of all possible jump moves for a specific player.
+     * These are single jumps, the way a player enters them.
+     *
+     * @param side side to use
+     * @return ArrayList of all possible jump moves
+     */
+    public ArrayList<Move> getAllPossibleJumpMoves(Player.Side side) {
+        MoveList moves = new MoveList();
+        addJumpMoves(movablePieces(side), side, moves);
+        return toMoveObjects(moves);
+    }
+
+    /**
+     * Generate all possible moves for a side into a move list. One move is one whole turn.
+     * The list is cleared first. Jump moves are forced, so if there are any jumps only the jumps are generated,
+     * and every jump is the whole chain of jumps the piece has to make.
+     *
+     * @param side  side to use
+     * @param moves list to fill with packed moves
+     */
+    public void generateMoves(Player.Side side, MoveList moves) {
+        moves.clear();
+        int pieces = movablePieces(side);
+
+        addCaptures(pieces, side, moves);
+        //If there is any jump moves, these are the only possible moves.
         if (!moves.isEmpty()) {
-            return moves; //Jump moves are forced, so this is the only move you can make.
+            return;
         }
 
-        //Normal Pieces have 2 possible moves.
-        if (side == Player.Side.BLACK && currPiece == Piece.BLACK) {
-            newRow = row - 1;
-            if (newRow >= 0) {
-                moves.addAll(generateMoves(row, col, newRow));
-            }
-        } else if (side == Player.Side.RED && currPiece == Piece.RED) {
-            newRow = row + 1;
-            if (newRow < board.length) {
-                moves.addAll(generateMoves(row, col, newRow));
-            }
+        addNormalMoves(pieces, side, moves);
+    }
+
+    /**
+     * Check if a side has a jump to make. Jumps are forced, so if it does, only jumps are legal.
+     *
+     * @param side side to use
+     * @return true if the side can jump
+     */
+    public boolean hasCaptures(Player.Side side) {
+        return getJumpers(movablePieces(side), side) != 0;
+    }
+
+    /**
+     * Check if a packed move is legal for a side, without generating every move.
+     * Only the moving piece is looked at, so this is cheap enough to check a move from a table before it is made.
+     *
+     * @param move packed move to check
+     * @param side side to use
+     * @return true if generateMoves would generate the move
+     */
+    public boolean isLegalMove(int move, Player.Side side) {
+        int from = Move.getFrom(move);
+        int movers = movablePieces(side);
+        if (move == Move.NO_MOVE || (movers & (1 << from)) == 0) {
+            return false;
         }
 
-        //King pieces, which have 4 possible moves.
-        else if (currPiece == Piece.BLACK_KING || currPiece == Piece.RED_KING) {
-            newRow = row - 1;
-            if (newRow >= 0) {
-                moves.addAll(generateMoves(row, col, newRow));
+        //If the side can jump, the move has to be one of the jump chains of its piece.
+        if (getJumpers(movers, side) != 0) {
+            if (!Move.isJump(move)) {
+                return false;
             }
+            chainMoves.clear();
+            addCaptures(1 << from, side, chainMoves);
+            return chainMoves.contains(move);
+        }
 
-            newRow = row + 1;
-            if (newRow < board.length) {
-                moves.addAll(generateMoves(row, col, newRow));
+        //Otherwise it has to be a step onto an empty square, in a direction the piece can move.
+        int to = Move.getTo(move);
+        if (move != Move.pack(from, to, 0) || ((blackPieces | redPieces) & (1 << to)) != 0) {
+            return false;
+        }
+        boolean king = isKing(from);
+        int first = king || side == Player.Side.RED ? UP_LEFT : DOWN_LEFT;
+        int last = king || side == Player.Side.BLACK ? DOWN_RIGHT : UP_RIGHT;
+        for (int direction = first; direction <= last; direction++) {
+            if (NEIGHBOURS[from][direction] == to) {
+                return true;
             }
         }
-        return moves;
+        return false;
+    }
+
+    /**
+     * Generate the normal (non jump) moves of a side into a move list. The list is cleared first.
+     * Jumps are forced, so these are only legal if the side has no jumps. Check with hasCaptures first.
+     *
+     * @param side  side to use
+     * @param moves list to fill with packed moves
+     */
+    public void generateQuietMoves(Player.Side side, MoveList moves) {
+        moves.clear();
+        addNormalMoves(movablePieces(side), side, moves);
+    }
+
+    /**
+     * Generate all possible jump chains for a side into a move list. One move is one whole turn.
+     * The list is cleared first.
+     *
+     * @param side  side to use
+     * @param moves list to fill with packed moves
+     */
+    public void generateCaptures(Player.Side side, MoveList moves) {
+        moves.clear();
+        addCaptures(movablePieces(side), side, moves);
     }
 
     /**
-     * Checks the moves that a specific piece can make and returns the list of valid moves.
+     * Generate the single jumps a side can make next into a move list.
+     * The list is cleared first. Unlike generateCaptures these are not whole chains.
      *
-     * @param newRow row to use
-     * @return list of generated moves
+     * @param side  side to use
+     * @param moves list to fill with packed moves
      */
-    private ArrayList<Move> generateMoves(int row, int col, int newRow) {
-        ArrayList<Move> moves = new ArrayList<Move>();
+    public void generateJumpMoves(Player.Side side, MoveList moves) {
+        moves.clear();
+        addJumpMoves(movablePieces(side), side, moves);
+    }
 
-        //Test both moves
-        int newCol = col - 1;
-        if (newCol >= 0 && getPiece(newRow, newCol) == Piece.EMPTY) {
-            moves.add(new Move(col, row, newCol, newRow));
+    /**
+     * Turn a list of packed moves into Move objects for callers outside the search.
+     *
+     * @param moves packed moves
+     * @return ArrayList of moves
+     */
+    private static ArrayList<Move> toMoveObjects(MoveList moves) {
+        ArrayList<Move> result = new ArrayList<Move>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            result.add(Move.unpack(moves.get(i)));
         }
+        return result;
+    }
 
-        newCol = col + 1;
-        if (newCol < board.length && getPiece(newRow, newCol) == Piece.EMPTY) {
-            moves.add(new Move(col, row, newCol, newRow));
+    /**
+     * Get the pieces a side is allowed to move.
+     * If the side is in the middle of a chain of jumps, only the jumping piece can move.
+     *
+     * @param side side to use
+     * @return bitboard of the pieces that can move
+     */
+    private int movablePieces(Player.Side side) {
+        if (pendingJump >= 0 && side == turn) {
+            return 1 << pendingJump;
         }
-        return moves;
+        return ownPieces(side);
     }
 
     /**
-     * Generate and return the list of possible jump moves for a specific piece
+     * Get the pieces that belong to a side.
      *
-     * @param row  row pos to use
-     * @param col  col pose to use
      * @param side side to use
-     * @return ArrayList of all possible jump moves
+     * @return bitboard of the side's pieces
      */
-    private ArrayList<Move> getPossibleJumpMoves(int row, int col, Player.Side side) {
-        Piece currPiece = getPiece(row, col);
+    private int ownPieces(Player.Side side) {
+        return side == Player.Side.BLACK ? blackPieces : redPieces;
+    }
 
-        ArrayList<Move> moves = new ArrayList<Move>();
+    /**
+     * Get the squares of the pieces in movers that can make at least one jump.
+     *
+     * @param movers bitboard of the pieces to check. Must all belong to side.
+     * @param side   side the pieces belong to
+     * @return bitboard of the pieces that can jump
+     */
+    private int getJumpers(int movers, Player.Side side) {
+        int empty = ~(blackPieces | redPieces);
+        int opponents = side == Player.Side.BLACK ? redPieces : blackPieces;
+        int up = side == Player.Side.RED ? movers : movers & kings;
+        int down = side == Player.Side.BLACK ? movers : movers & kings;
+
+        return (up & NOT_LEFT_2 & (empty >>> 7) & upLeft(opponents))
+                | (up & NOT_RIGHT_2 & (empty >>> 9) & upRight(opponents))
+                | (down & NOT_LEFT_2 & (empty << 9) & downLeft(opponents))
+                | (down & NOT_RIGHT_2 & (empty << 7) & downRight(opponents));
+    }
 
-        //Standard pieces can make 2 possible jumps, kings can make 4.
-        //Standard pieces
-        if (side == Player.Side.BLACK && getPiece(row, col) == Piece.BLACK) {
-            int newRow = row - 2;
-            if (newRow >= 0) {
-                moves.addAll(generateJumpMoves(row, col, newRow, side));
-            }
-        } else if (side == Player.Side.RED && getPiece(row, col) == Piece.RED) {
-            int newRow = row + 2;
-            if (newRow < board.length) {
-                moves.addAll(generateJumpMoves(row, col, newRow, side));
-            }
-        }
+    /**
+     * Get the pieces in movers that can make a normal (non jump) move.
+     *
+     * @param movers bitboard of the pieces to check. Must all belong to side.
+     * @param side   side the pieces belong to
+     * @return bitboard of the pieces that can make a normal move
+     */
+    private int getSteppers(int movers, Player.Side side) {
+        int empty = ~(blackPieces | redPieces);
+        int up = side == Player.Side.RED ? movers : movers & kings;
+        int down = side == Player.Side.BLACK ? movers : movers & kings;
 
-        //King pieces .
-        else if (getPiece(row, col) == Piece.BLACK_KING || getPiece(row, col) == Piece.RED_KING) {
-            int newRow = row + 2;
-            if (newRow < board.length) {
-                moves.addAll(generateJumpMoves(row, col, newRow, side));
-            }
-            newRow = row - 2;
-            if (newRow >= 0) {
-                moves.addAll(generateJumpMoves(row, col, newRow, side));
-            }
-        }
-        return moves;
+        return (up & ((empty >>> 4) | (NOT_EDGE_3 & (empty >>> 3)) | (NOT_EDGE_5 & (empty >>> 5))))
+                | (down & ((empty << 4) | (NOT_EDGE_3 & (empty << 5)) | (NOT_EDGE_5 & (empty << 3))));
     }
 
     /**
-     * Generate jump moves for a specific piece. Returning the list of all moves if valid.
+     * Generate the single jump moves for every piece in movers and add them to moves.
+     * Red men jump up the board (towards row 7), Black men jump down, kings jump both ways.
      *
-     * @param row    row
-     * @param col    col
-     * @param newRow new row
-     * @return list of generated jump moves
+     * @param movers bitboard of the pieces to generate for. Must all belong to side.
+     * @param side   side the pieces belong to
+     * @param moves  list to add the jumps to
      */
-    private ArrayList<Move> generateJumpMoves(int row, int col, int newRow, Player.Side side) {
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        //Check top.
-        int newCol = col + 2;
-        //Make sure the move is valid.
-        if (newRow < board.length && newRow >= 0 && newCol < board.length && newCol >= 0
-                && getPiece(newRow, newCol) == Piece.EMPTY) {
-            int midRow = (row + newRow) / 2;
-            int midCol = (col + newCol) / 2;
-            Piece midPiece = getPiece(midRow, midCol);
+    private void addJumpMoves(int movers, Player.Side side, MoveList moves) {
+        int empty = ~(blackPieces | redPieces);
+        int opponents = side == Player.Side.BLACK ? redPieces : blackPieces;
+        int up = side == Player.Side.RED ? movers : movers & kings;
+        int down = side == Player.Side.BLACK ? movers : movers & kings;
+
+        //A jump lands 7 or 9 squares away no matter which row we start on.
+        addJumps(up & NOT_LEFT_2 & (empty >>> 7) & upLeft(opponents), 7, UP_LEFT, moves);
+        addJumps(up & NOT_RIGHT_2 & (empty >>> 9) & upRight(opponents), 9, UP_RIGHT, moves);
+        addJumps(down & NOT_LEFT_2 & (empty << 9) & downLeft(opponents), -9, DOWN_LEFT, moves);
+        addJumps(down & NOT_RIGHT_2 & (empty << 7) & downRight(opponents), -7, DOWN_RIGHT, moves);
+    }
 
-            //Make sure the midPiece is valid.
-            if (side == Player.Side.BLACK && (midPiece == Piece.RED || midPiece == Piece.RED_KING)) {
-                moves.add(new Move(col, row, newCol, newRow));
-            } else if (side == Player.Side.RED && (midPiece == Piece.BLACK || midPiece == Piece.BLACK_KING)) {
-                moves.add(new Move(col, row, newCol, newRow));
-            }
+    /**
+     * Generate every whole chain of jumps for the pieces in movers and add them to moves.
+     *
+     * @param movers bitboard of the pieces to generate for. Must all belong to side.
+     * @param side   side the pieces belong to
+     * @param moves  list to add the jump chains to
+     */
+    private void addCaptures(int movers, Player.Side side, MoveList moves) {
+        int jumpers = getJumpers(movers, side);
+        int empty = ~(blackPieces | redPieces);
+        int opponents = side == Player.Side.BLACK ? redPieces : blackPieces;
+        while (jumpers != 0) {
+            int square = Integer.numberOfTrailingZeros(jumpers);
+            jumpers &= jumpers - 1;
+            addCaptureChains(square, isKing(square), side, opponents, empty, Move.pack(square, square, 0), moves);
         }
+    }
 
-        //Check bottom.
-        newCol = col - 2;
-        if (newRow < board.length && newRow >= 0 && newCol < board.length && newCol >= 0
-                && getPiece(newRow, newCol) == Piece.EMPTY) {
-            int midRow = (row + newRow) / 2;
-            int midCol = (col + newCol) / 2;
-            Piece midPiece = getPiece(midRow, midCol);
-
-            if (side == Player.Side.BLACK && (midPiece == Piece.RED || midPiece == Piece.RED_KING)) {
-                moves.add(new Move(col, row, newCol, newRow));
-            } else if (side == Player.Side.RED && (midPiece == Piece.BLACK || midPiece == Piece.BLACK_KING)) {
-                moves.add(new Move(col, row, newCol, newRow));
+    /**
+     * Follow every chain of jumps from a square and add each finished chain to moves.
+     * Jumped pieces come off the board straight away, the same as when the jumps are made one at a time,
+     * and a man that lands in its king row keeps jumping as a king.
+     *
+     * @param square    square the piece is on now
+     * @param king      true if the piece is a king now
+     * @param side      side the piece belongs to
+     * @param opponents opponent pieces still on the board
+     * @param empty     empty squares
+     * @param move      packed move so far
+     * @param moves     list to add the finished chains to
+     */
+    private void addCaptureChains(int square, boolean king, Player.Side side, int opponents, int empty,
+                                  int move, MoveList moves) {
+        boolean extended = false;
+        //A move can only hold MAX_JUMPS jumps. A longer chain stops there.
+        if (Move.getJumps(move) < Move.MAX_JUMPS) {
+            //Men only jump forwards. Red forwards is up, Black forwards is down.
+            int first = king || side == Player.Side.RED ? UP_LEFT : DOWN_LEFT;
+            int last = king || side == Player.Side.BLACK ? DOWN_RIGHT : UP_RIGHT;
+            for (int direction = first; direction <= last; direction++) {
+                //Off the board jumps have no landing bit, so they are never empty.
+                int land = LANDING_BITS[square][direction];
+                int mid = JUMPED_BITS[square][direction];
+                if ((empty & land) == 0 || (opponents & mid) == 0) {
+                    continue;
+                }
+                addCaptureChains(JUMP_TARGETS[square][direction], king || (land & kingRow(side)) != 0, side,
+                        opponents & ~mid, (empty | (1 << square) | mid) & ~land,
+                        Move.addJump(move, JUMP_TARGETS[square][direction], direction), moves);
+                extended = true;
             }
         }
-
-        return moves;
+        if (!extended && Move.isJump(move)) {
+            moves.add(move);
+        }
     }
 
     /**
-     * Generate and return the list of all possible jump moves for a specific player.
+     * Generate the normal (non jump) moves for every piece in movers and add them to moves.
      *
-     * @param side side to use
-     * @return ArrayList of all possible jump moves
+     * @param movers bitboard of the pieces to generate for. Must all belong to side.
+     * @param side   side the pieces belong to
+     * @param moves  list to add the moves to
      */
-    public ArrayList<Move> getAllPossibleJumpMoves(Player.Side side) {
-        ArrayList<Move> moves = new ArrayList<Move>();
-        Piece normal;
-        Piece king;
+    private void addNormalMoves(int movers, Player.Side side, MoveList moves) {
+        int empty = ~(blackPieces | redPieces);
+        int up = side == Player.Side.RED ? movers : movers & kings;
+        int down = side == Player.Side.BLACK ? movers : movers & kings;
+
+        //Every square has a neighbour 4 away. Only some squares have one 3 or 5 away.
+        addMoves(up & (empty >>> 4), 4, moves);
+        addMoves(up & NOT_EDGE_3 & (empty >>> 3), 3, moves);
+        addMoves(up & NOT_EDGE_5 & (empty >>> 5), 5, moves);
+        addMoves(down & (empty << 4), -4, moves);
+        addMoves(down & NOT_EDGE_3 & (empty << 5), -5, moves);
+        addMoves(down & NOT_EDGE_5 & (empty << 3), -3, moves);
+    }
 
-        if (side == Player.Side.BLACK) {
-            normal = Piece.BLACK;
-            king = Piece.BLACK_KING;
-        } else {
-            normal = Piece.RED;
-            king = Piece.RED_KING;
+    /**
+     * Add a move for every start square in sources that goes to start + delta.
+     *
+     * @param sources bitboard of the start squares
+     * @param delta   square difference between the start and the end of each move
+     * @param moves   list to add the packed moves to
+     */
+    private static void addMoves(int sources, int delta, MoveList moves) {
+        while (sources != 0) {
+            int from = Integer.numberOfTrailingZeros(sources);
+            sources &= sources - 1;
+            moves.add(Move.pack(from, from + delta, 0));
         }
+    }
 
-        //Just brute force it....
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                Piece currPiece = getPiece(i, j);
-                if (currPiece == normal || currPiece == king) {
-                    moves.addAll(getPossibleJumpMoves(i, j, side));
-                }
-            }
+    /**
+     * Add a single jump for every start square in sources that lands on start + delta.
+     *
+     * @param sources   bitboard of the start squares
+     * @param delta     square difference between the start and the end of each jump
+     * @param direction direction of the jumps
+     * @param moves     list to add the packed moves to
+     */
+    private static void addJumps(int sources, int delta, int direction, MoveList moves) {
+        while (sources != 0) {
+            int from = Integer.numberOfTrailingZeros(sources);
+            sources &= sources - 1;
+            moves.add(Move.addJump(Move.pack(from, from, 0), from + delta, direction));
         }
-        return moves;
+    }
+
+    //Neighbour shifts. Bit i of the result is set if the square next to square i in that direction is set.
+    //The shift depends on which row square i is in.
+    private static int upLeft(int pieces) {
+        return ((pieces >>> 3) & EVEN_ROWS) | ((pieces >>> 4) & ODD_ROWS);
+    }
+
+    private static int upRight(int pieces) {
+        return ((pieces >>> 4) & EVEN_ROWS) | ((pieces >>> 5) & ODD_ROWS);
+    }
+
+    private static int downLeft(int pieces) {
+        return ((pieces << 5) & EVEN_ROWS) | ((pieces << 4) & ODD_ROWS);
+    }
+
+    private static int downRight(int pieces) {
+        return ((pieces << 4) & EVEN_ROWS) | ((pieces << 3) & ODD_ROWS);
     }
 
     /**
-     * Get and return the number of additional jump moves that can be made after the current jump move.
+     * Get and return the number of additional jump moves that can be made after the current jump moves.
+     * Every jump that leaves the piece able to jump again counts as 2.
      *
-     * @param board Board to use
-     * @param jumpMoves jump moves list to use
+     * @param jumpMoves packed single jumps of side on this board, from generateJumpMoves
      * @param side      side of player making the move
      * @return number of additional jump moves
      */
-    public int getAdditionalJumpMoves(Board board, ArrayList<Move> jumpMoves, Player.Side side) {
+    public int getAdditionalJumpMoves(MoveList jumpMoves, Player.Side side) {
         int result = 0;
 
         //For all possible moves
-        for (Move jump : jumpMoves) {
-            //Might be memory intensive
-            //However this is the only way I could do this without it being overly complicated.
-            Board tempBoard = Board.clone(board);
-            Piece piece = getPiece(jump.getStartRow(), jump.getStartCol());
-            MoveResult moveResult = tempBoard.makeMove(jump, side);
-
-            //Check to not mess up the while loop.
-            if (moveResult.isAdditionalMove()) {
+        for (int i = 0; i < jumpMoves.size(); i++) {
+            long undo = applyMove(jumpMoves.get(i), side);
+            if (isAdditionalMove(undo)) {
                 result += 2;
             }
-
-            //While we can make an additional move.
-            while (moveResult.isAdditionalMove()) {
-                //Add to our result
-                //Set up our new starting positions
-                int newStartCol = jump.getEndCol();
-                int newStartRow = jump.getEndRow();
-
-                //Get the jump moves for that piece
-                ArrayList<Move> tempJumps = getPossibleJumpMoves(newStartRow, newStartCol, side);
-                //If the piece can still jump, make the first jump move.
-                //If a piece has choosing jump moves after the first, we'll count it as one move.
-                if (!tempJumps.isEmpty()) {
-                    result += 2;
-                    moveResult = tempBoard.makeMove(tempJumps.get(0), side);
-                } else {
-                    moveResult.setAdditionalMove(false);
-                }
-            }
+            undoMove(undo);
         }
         return result;
     }
 
+    /**
+     * Check if the piece on a square is a king.
+     *
+     * @param square square to check
+     * @return true if there is a king on the square
+     */
+    public boolean isKing(int square) {
+        return (kings & (1 << square)) != 0;
+    }
+
     /* GETTERS AND SETTERS */
+
+    /**
+     * Get the board as a 2D array of pieces.
+     * The array is built from the bitboards on every call, so changing it does not change this board.
+     *
+     * @return board state as [row][col]
+     */
     public Piece[][] getBoard() {
-        return board;
+        Piece[][] result = new Piece[8][8];
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                result[i][j] = getPiece(i, j);
+            }
+        }
+        return result;
     }
 
+    /**
+     * Set the board from a 2D array of pieces.
+     * Black is set to move, with no pending jump.
+     *
+     * @param board board state as [row][col]
+     */
     public void setBoard(Piece[][] board) {
-        this.board = board;
+        blackPieces = 0;
+        redPieces = 0;
+        kings = 0;
+        turn = Player.Side.BLACK;
+        pendingJump = -1;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece piece = board[i][j];
+                if (piece == Piece.EMPTY) {
+                    continue;
+                }
+                int square = toSquare(i, j);
+                if (square < 0) {
+                    throw new IllegalArgumentException("Piece on an unplayable square: " + i + ", " + j);
+                }
+                int bit = 1 << square;
+                if (piece == Piece.RED || piece == Piece.RED_KING) {
+                    redPieces |= bit;
+                } else {
+                    blackPieces |= bit;
+                }
+                if (piece == Piece.RED_KING || piece == Piece.BLACK_KING) {
+                    kings |= bit;
+                }
+            }
+        }
+        key = computeKey();
+        computeFeatures();
     }
 
     public boolean isGameOver() {
@@ -668,34 +1198,95 @@ public class Board {
     }
 
     public int getTotalRed() {
-        return numRed + numRedKing;
+        return Integer.bitCount(redPieces);
     }
 
 
     public int getTotalBlack() {
-        return numBlack + numBlackKing;
+        return Integer.bitCount(blackPieces);
     }
 
     public int getNumBlack() {
-        return numBlack;
+        return Integer.bitCount(blackPieces & ~kings);
     }
 
     public int getNumRed() {
-        return numRed;
+        return Integer.bitCount(redPieces & ~kings);
     }
 
 
     public int getNumRedKing() {
-        return numRedKing;
+        return Integer.bitCount(redPieces & kings);
     }
 
 
     public int getNumBlackKing() {
-        return numBlackKing;
+        return Integer.bitCount(blackPieces & kings);
     }
 
+    /**
+     * Get the piece at a position.
+     * Unplayable squares are always EMPTY.
+     *
+     * @param row row to check
+     * @param col col to check
+     * @return piece at that position
+     */
     public Piece getPiece(int row, int col) {
-        return board[row][col];
+        int square = toSquare(row, col);
+        if (square < 0) {
+            return Piece.EMPTY;
+        }
+        int bit = 1 << square;
+        if ((blackPieces & bit) != 0) {
+            return (kings & bit) != 0 ? Piece.BLACK_KING : Piece.BLACK;
+        } else if ((redPieces & bit) != 0) {
+            return (kings & bit) != 0 ? Piece.RED_KING : Piece.RED;
+        }
+        return Piece.EMPTY;
+    }
+
+    public int getBlackPieces() {
+        return blackPieces;
+    }
+
+    public int getRedPieces() {
+        return redPieces;
+    }
+
+    public int getKings() {
+        return kings;
+    }
+
+    public Player.Side getTurn() {
+        return turn;
+    }
+
+    /**
+     * Set the side to move. Clears any pending jump.
+     *
+     * @param turn side to move
+     */
+    public void setTurn(Player.Side turn) {
+        setTurn(turn, -1);
+    }
+
+    public int getPendingJump() {
+        return pendingJump;
+    }
+
+    /**
+     * Get the number of pieces that count towards an evaluation feature.
+     *
+     * @param feature one of the feature constants, such as RED_EDGE_MEN
+     * @return number of pieces
+     */
+    public int getFeature(int feature) {
+        return features[feature];
+    }
+
+    public long getKey() {
+        return key;
     }
 
     public int getScore() {
@@ -709,55 +1300,40 @@ public class Board {
     /**
      * Hashcode override using the Zobrist hashing method
      * This was required to get hashmap to work correctly.
+     * The key is kept up to date as moves are made, so this is just a field read.
      *
      * @return hashcode of this object.
      */
     @Override
     public int hashCode() {
-        int result = 0;
-
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (board[i][j] != Piece.EMPTY) {
-                    Piece piece = board[i][j];
-                    switch (piece) {
-                        case RED:
-                            result ^= zobristTable[i][j][0];
-                            break;
-                        case RED_KING:
-                            result ^= zobristTable[i][j][1];
-                            break;
-                        case BLACK:
-                            result ^= zobristTable[i][j][2];
-                            break;
-                        case BLACK_KING:
-                            result ^= zobristTable[i][j][3];
-                            break;
-                    }
-                }
-            }
-        }
-        return result;
+        return (int) (key ^ (key >>> 32));
     }
 
     /**
      * Equals method override.
-     * Checks the hashcodes.
+     * Checks the keys first, then the full position so that two boards with colliding keys are never equal.
      *
      * @param o objects to check for equality
      * @return true of objects are equal
      */
     @Override
     public boolean equals(Object o) {
-        boolean result = false;
-        if (!o.getClass().equals(Board.class)) {
+        if (o == null || !o.getClass().equals(Board.class)) {
             return false;
-        } else {
-            if (o.hashCode() == this.hashCode()) {
-                return true;
-            }
         }
-        return result;
+        Board other = (Board) o;
+        return key == other.key && samePosition(other);
+    }
+
+    /**
+     * Full position check. Compares every bitboard, the side to move and the pending jump.
+     *
+     * @param other board to compare to
+     * @return true if both boards hold the same position
+     */
+    public boolean samePosition(Board other) {
+        return blackPieces == other.blackPieces && redPieces == other.redPieces && kings == other.kings
+                && turn == other.turn && pendingJump == other.pendingJump;
     }
 
     /**
@@ -773,7 +1349,7 @@ public class Board {
         if(useX){
             for (int i = 7; i >= 0; i--) {
                 result += (i) + " ";
-                for (int j = 0; j < board.length; j++) {
+                for (int j = 0; j < 8; j++) {
                     result = result + "[";
                     Piece piece = getPiece(i, j);
                     switch (piece) {
@@ -800,7 +1376,7 @@ public class Board {
         else {
             for (int i = 7; i >= 0; i--) {
                 result += (i) + " ";
-                for (int j = 0; j < board.length; j++) {
+                for (int j = 0; j < 8; j++) {
                     result = result + "[";
                     Piece piece = getPiece(i, j);
                     switch (piece) {
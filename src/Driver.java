@@ -82,6 +82,8 @@ public class Driver {
         }
         //Make debug true for debug output.
         bot = new AI(flipSide(player.getSide()), difficulty, false);
+        //Let the bot think while the player is thinking.
+        bot.setPonder(true);
 
         if (currentPlayer == null) {
             currentPlayer = bot;
@@ -216,6 +218,7 @@ public class Driver {
                 }
             }
         }
+        bot.stopPondering();
     }
 
     /**
@@ -322,12 +325,12 @@ public class Driver {
             System.out.println("No more red pieces! Black wins!");
             finished = true;
             blackWins++;
-        } else if (mainBoard.getAllPossibleMoves(Player.Side.BLACK).isEmpty()) {
+        } else if (!mainBoard.hasAnyMove(Player.Side.BLACK)) {
             System.out.println(mainBoard.toString());
             System.out.println("Black cannot move! Red Wins!");
             finished = true;
             blackWins++;
-        } else if (mainBoard.getAllPossibleMoves(Player.Side.RED).isEmpty()) {
+        } else if (!mainBoard.hasAnyMove(Player.Side.RED)) {
             System.out.println(mainBoard.toString());
             System.out.println("Red cannot move! Black Wins!");
             finished = true;
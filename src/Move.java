@@ -1,3 +1,5 @@
+import java.util.ArrayList;
+
 /**
  * A move is represented by the starting position and the ending position
  * A move must be a valid move in order to be applied to a board.
@@ -6,6 +8,17 @@
  * @version 3/2/2018
  */
 public class Move {
+    //The search works with moves packed into an int so it doesn't need a Move object for every move.
+    //Bits 0-4 start square, bits 5-9 end square, bits 10-13 number of pieces jumped. See Board.toSquare.
+    //Jump moves can be a whole chain of jumps, so they also keep the direction of every jump,
+    //2 bits each from bit 14. Directions are the Board.UP_LEFT ... Board.DOWN_RIGHT constants.
+    //A real move either moves to another square or jumps something, so 0 is never a real move.
+    public static final int NO_MOVE = 0;
+    public static final int MAX_JUMPS = 9;
+    private static final int TO_SHIFT = 5;
+    private static final int JUMPS_SHIFT = 10;
+    private static final int PATH_SHIFT = 14;
+
     private int startRow;
     private int startCol;
     private int endRow;
@@ -33,6 +46,131 @@ public class Move {
 
     }
 
+    /**
+     * Pack a move into an int.
+     *
+     * @param from  start square
+     * @param to    end square
+     * @param jumps number of pieces jumped, 0 for a normal move
+     * @return packed move
+     */
+    public static int pack(int from, int to, int jumps) {
+        return from | (to << TO_SHIFT) | (jumps << JUMPS_SHIFT);
+    }
+
+    /**
+     * Add one more jump to the end of a packed move.
+     *
+     * @param move      packed move so far
+     * @param to        square the jump lands on
+     * @param direction direction of the jump
+     * @return packed move with the jump added
+     */
+    public static int addJump(int move, int to, int direction) {
+        int jumps = getJumps(move);
+        return (move & ~((31 << TO_SHIFT) | (15 << JUMPS_SHIFT)))
+                | (to << TO_SHIFT) | ((jumps + 1) << JUMPS_SHIFT) | (direction << (PATH_SHIFT + 2 * jumps));
+    }
+
+    /**
+     * Pack this move into an int.
+     *
+     * @return packed move, or NO_MOVE if either end is not a playable square
+     */
+    public int pack() {
+        int from = Board.toSquare(startRow, startCol);
+        int to = Board.toSquare(endRow, endCol);
+        if (from < 0 || to < 0) {
+            return NO_MOVE;
+        }
+        if (!jumpMove) {
+            return pack(from, to, 0);
+        }
+        int direction = (endRow > startRow ? Board.UP_LEFT : Board.DOWN_LEFT) + (endCol > startCol ? 1 : 0);
+        return addJump(pack(from, from, 0), to, direction);
+    }
+
+    /**
+     * Create a Move object from a packed move.
+     * A chain of jumps becomes a single Move from the start to the end, use unpackPath to get each jump.
+     *
+     * @param move packed move
+     * @return new move
+     */
+    public static Move unpack(int move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        return new Move(Board.squareCol(from), Board.squareRow(from), Board.squareCol(to), Board.squareRow(to));
+    }
+
+    /**
+     * Split a packed move into the single steps that make it up.
+     * A normal move or a single jump gives one Move. A chain of jumps gives one Move per jump.
+     *
+     * @param move packed move
+     * @return list of single step moves, in order
+     */
+    public static ArrayList<Move> unpackPath(int move) {
+        ArrayList<Move> result = new ArrayList<Move>();
+        int jumps = getJumps(move);
+        if (jumps == 0) {
+            result.add(unpack(move));
+            return result;
+        }
+        int square = getFrom(move);
+        for (int i = 0; i < jumps; i++) {
+            int next = Board.jumpTarget(square, getDirection(move, i));
+            result.add(new Move(Board.squareCol(square), Board.squareRow(square),
+                    Board.squareCol(next), Board.squareRow(next)));
+            square = next;
+        }
+        return result;
+    }
+
+    /**
+     * Get the move as a string, listing every square a chain of jumps lands on.
+     *
+     * @param move packed move
+     * @return move string
+     */
+    public static String toString(int move) {
+        ArrayList<Move> path = unpackPath(move);
+        String result = path.get(0).toString();
+        for (int i = 1; i < path.size(); i++) {
+            Move step = path.get(i);
+            result += (char) (65 + step.getEndCol());
+            result += step.getEndRow();
+        }
+        return result;
+    }
+
+    public static int getFrom(int move) {
+        return move & 31;
+    }
+
+    public static int getTo(int move) {
+        return (move >>> TO_SHIFT) & 31;
+    }
+
+    public static int getJumps(int move) {
+        return (move >>> JUMPS_SHIFT) & 15;
+    }
+
+    public static boolean isJump(int move) {
+        return getJumps(move) != 0;
+    }
+
+    /**
+     * Get the direction of one of the jumps of a packed move.
+     *
+     * @param move packed move
+     * @param jump index of the jump, starting at 0
+     * @return direction of that jump
+     */
+    public static int getDirection(int move, int jump) {
+        return (move >>> (PATH_SHIFT + 2 * jump)) & 3;
+    }
+
     /*GETTERS AND SETTERS*/
     public int getStartRow() {
         return startRow;
@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+/**
+ * A reusable list of packed moves. See Move for the packed format.
+ * The search keeps one list per ply and refills it at every node instead of making new lists.
+ *
+ * @version 10/17/2026
+ */
+public class MoveList {
+    private int[] moves;
+    private int size;
+
+    /**
+     * Default Constructor
+     */
+    public MoveList() {
+        this(64);
+    }
+
+    /**
+     * Constructor with a starting capacity. The list grows if it ever needs to.
+     *
+     * @param capacity starting capacity
+     */
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Add a move to the end of the list.
+     *
+     * @param move packed move
+     */
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Check if the list has a move.
+     *
+     * @param move packed move
+     * @return true if the move is in the list
+     */
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the move at an index, shifting the rest of the list down.
+     *
+     * @param index index to remove
+     */
+    public void remove(int index) {
+        System.arraycopy(moves, index + 1, moves, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Remove every move from the list. Keeps the storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /*GETTERS AND SETTERS*/
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
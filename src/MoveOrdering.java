@@ -0,0 +1,204 @@
+/**
+ * Move ordering for the search.
+ * Alpha beta cuts off sooner when the best move is searched first, so the moves of a node are sorted before
+ * they are searched: the transposition table move first, then captures by the material they win,
+ * then the killer moves of the ply, then every other move by its history score.
+ * Every search thread has its own MoveOrdering, because the killers and history are updated at every cut off.
+ *
+ * @version 10/17/2026
+ */
+public class MoveOrdering {
+    //Sort keys of each kind of move. Captures and killers always come before the moves ordered by history.
+    private static final int HASH_MOVE_KEY = Integer.MAX_VALUE;
+    private static final int CAPTURE_KEY = 1 << 30;
+    private static final int KILLER_KEY = 1 << 29;
+    //Once a history score gets this big, every score is halved, so they never reach the killers.
+    private static final int MAX_HISTORY = 1 << 24;
+    //Material won by capturing a piece. The same values the heuristic uses.
+    private static final int MAN_VALUE = 5;
+    private static final int KING_VALUE = 15;
+    private static final int KILLERS_PER_PLY = 2;
+
+    //Quiet moves that caused a cut off, indexed by ply. The newest killer is first.
+    private int[][] killers = new int[0][KILLERS_PER_PLY];
+    //How often a quiet move caused a cut off, indexed by side, from square and to square.
+    //Deeper cut offs count for more.
+    private int[][][] history = new int[2][32][32];
+    //Sort keys of the list being sorted.
+    private int[] keys = new int[64];
+
+    /**
+     * Make sure there are killer slots for every ply the search can reach.
+     *
+     * @param plies number of plies
+     */
+    public void prepare(int plies) {
+        if (killers.length < plies) {
+            killers = new int[plies][KILLERS_PER_PLY];
+        }
+    }
+
+    /**
+     * Start a new search. The killers are from boards that are no longer in the tree, so they are cleared.
+     * The history is halved, so it still helps but the new search soon takes over.
+     */
+    public void newSearch() {
+        for (int[] plyKillers : killers) {
+            for (int i = 0; i < KILLERS_PER_PLY; i++) {
+                plyKillers[i] = Move.NO_MOVE;
+            }
+        }
+        ageHistory();
+    }
+
+    /**
+     * Halve every history score.
+     */
+    private void ageHistory() {
+        for (int[][] sideHistory : history) {
+            for (int[] fromHistory : sideHistory) {
+                for (int i = 0; i < fromHistory.length; i++) {
+                    fromHistory[i] = fromHistory[i] / 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort the moves of a node, best first.
+     *
+     * @param board    board the moves are for
+     * @param moves    moves to sort
+     * @param hashMove move from the transposition table, or Move.NO_MOVE
+     * @param side     side to move
+     * @param ply      distance from the root
+     */
+    public void orderMoves(Board board, MoveList moves, int hashMove, Player.Side side, int ply) {
+        if (keys.length < moves.size()) {
+            keys = new int[moves.size()];
+        }
+        int[] plyKillers = killers[ply];
+        int[][] sideHistory = history[side.ordinal()];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (move == hashMove) {
+                keys[i] = HASH_MOVE_KEY;
+            } else if (Move.isJump(move)) {
+                keys[i] = CAPTURE_KEY + captureValue(board, move);
+            } else if (move == plyKillers[0]) {
+                keys[i] = KILLER_KEY + 1;
+            } else if (move == plyKillers[1]) {
+                keys[i] = KILLER_KEY;
+            } else {
+                keys[i] = sideHistory[Move.getFrom(move)][Move.getTo(move)];
+            }
+        }
+        sort(moves, keys);
+    }
+
+    /**
+     * Sort the root moves after an iteration of iterative deepening.
+     * The best move goes first. The rest are sorted by their score, and moves with the same score by the size of
+     * their subtree. A move that took a lot of work to refute is usually close to being the best move.
+     *
+     * @param moves    root moves
+     * @param bestMove best move of the iteration
+     * @param scores   score of each root move
+     * @param nodes    number of nodes searched under each root move
+     */
+    public static void orderRootMoves(MoveList moves, int bestMove, int[] scores, long[] nodes) {
+        //Insertion sort. There are never many root moves.
+        for (int i = 1; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score = scores[i];
+            long count = nodes[i];
+            int j = i - 1;
+            while (j >= 0 && moves.get(j) != bestMove && (move == bestMove || score > scores[j]
+                    || (score == scores[j] && count > nodes[j]))) {
+                moves.set(j + 1, moves.get(j));
+                scores[j + 1] = scores[j];
+                nodes[j + 1] = nodes[j];
+                j--;
+            }
+            moves.set(j + 1, move);
+            scores[j + 1] = score;
+            nodes[j + 1] = count;
+        }
+    }
+
+    /**
+     * Remember a move that caused a cut off. Captures are already searched first, so only quiet moves are kept.
+     *
+     * @param move  move that caused the cut off
+     * @param side  side that made the move
+     * @param depth remaining depth of the node
+     * @param ply   distance from the root
+     */
+    public void recordCutoff(int move, Player.Side side, int depth, int ply) {
+        if (move == Move.NO_MOVE || Move.isJump(move)) {
+            return;
+        }
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+        int[] fromHistory = history[side.ordinal()][Move.getFrom(move)];
+        int to = Move.getTo(move);
+        fromHistory[to] = fromHistory[to] + depth * depth;
+        if (fromHistory[to] > MAX_HISTORY) {
+            ageHistory();
+        }
+    }
+
+    /**
+     * Get a killer move of a ply.
+     *
+     * @param ply   distance from the root
+     * @param index 0 for the newest killer, 1 for the one before it
+     * @return killer move, or Move.NO_MOVE if there isn't one
+     */
+    public int getKiller(int ply, int index) {
+        return killers[ply][index];
+    }
+
+    /**
+     * Get the material a capture wins. Kings are worth more than men.
+     *
+     * @param board board before the capture
+     * @param move  packed capture move
+     * @return material won
+     */
+    public static int captureValue(Board board, int move) {
+        int value = 0;
+        int square = Move.getFrom(move);
+        for (int i = 0; i < Move.getJumps(move); i++) {
+            int direction = Move.getDirection(move, i);
+            value = value + (board.isKing(Board.neighbour(square, direction)) ? KING_VALUE : MAN_VALUE);
+            square = Board.jumpTarget(square, direction);
+        }
+        return value;
+    }
+
+    /**
+     * Sort moves by their keys, highest first. The order of moves with the same key is kept.
+     *
+     * @param moves moves to sort
+     * @param keys  sort key of each move
+     */
+    private static void sort(MoveList moves, int[] keys) {
+        //Insertion sort. Move lists are short, and usually close to sorted already.
+        for (int i = 1; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int key = keys[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                moves.set(j + 1, moves.get(j));
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            moves.set(j + 1, move);
+            keys[j + 1] = key;
+        }
+    }
+}
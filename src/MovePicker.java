@@ -0,0 +1,138 @@
+/**
+ * Hands out the moves of one node in stages, generating each stage only when the search gets to it.
+ * The transposition table move is tried first without generating anything. Then come the captures,
+ * then the killer moves, then the rest of the quiet moves. Jumps are forced, so a node with captures
+ * never gets past the captures. When the first move causes a cut off, nothing else is ever generated.
+ * The search keeps one picker for each ply and resets it at every node.
+ *
+ * @version 10/17/2026
+ */
+public class MovePicker {
+    //Stages, in the order they are reached.
+    private static final int HASH_MOVE = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int CAPTURES = 2;
+    private static final int KILLERS = 3;
+    private static final int GENERATE_QUIETS = 4;
+    private static final int QUIETS = 5;
+    private static final int DONE = 6;
+
+    private Board board;
+    private Player.Side side;
+    private int ply;
+    private int hashMove;
+    private MoveOrdering ordering;
+    private int stage;
+    //Moves of the current stage, and the next one to hand out.
+    private MoveList moves;
+    private int index;
+    //Killers that have already been handed out, so the quiet stage can skip them.
+    private int killer1;
+    private int killer2;
+
+    /**
+     * Constructor for the MovePicker
+     *
+     * @param moves list to generate the moves into
+     */
+    public MovePicker(MoveList moves) {
+        this.moves = moves;
+    }
+
+    /**
+     * Start picking the moves of a new node.
+     *
+     * @param board    board to pick moves on. It must not change until the picker is done, apart from moves that
+     *                 are made and undone in between calls to next.
+     * @param side     side to move
+     * @param hashMove move from the transposition table, or Move.NO_MOVE. It is checked before it is used.
+     * @param ordering killers and history of the search
+     * @param ply      distance from the root
+     */
+    public void reset(Board board, Player.Side side, int hashMove, MoveOrdering ordering, int ply) {
+        this.board = board;
+        this.side = side;
+        this.hashMove = hashMove;
+        this.ordering = ordering;
+        this.ply = ply;
+        this.stage = HASH_MOVE;
+        this.killer1 = Move.NO_MOVE;
+        this.killer2 = Move.NO_MOVE;
+        moves.clear();
+        index = 0;
+    }
+
+    /**
+     * Get the next move to search.
+     *
+     * @return next packed move, or Move.NO_MOVE when every move has been handed out
+     */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case HASH_MOVE:
+                    stage = GENERATE_CAPTURES;
+                    //The table can be shared with other programs, so never trust its move without checking it.
+                    if (board.isLegalMove(hashMove, side)) {
+                        return hashMove;
+                    }
+                    hashMove = Move.NO_MOVE;
+                    break;
+                case GENERATE_CAPTURES:
+                    if (board.hasCaptures(side)) {
+                        board.generateCaptures(side, moves);
+                        ordering.orderMoves(board, moves, hashMove, side, ply);
+                        index = 0;
+                        stage = CAPTURES;
+                    } else {
+                        stage = KILLERS;
+                    }
+                    break;
+                case CAPTURES:
+                    if (index < moves.size()) {
+                        int move = moves.get(index++);
+                        if (move != hashMove) {
+                            return move;
+                        }
+                        break;
+                    }
+                    stage = DONE;
+                    break;
+                case KILLERS:
+                    if (index >= 2) {
+                        stage = GENERATE_QUIETS;
+                        break;
+                    }
+                    //There are no captures here, so a killer only has to be a legal step.
+                    int killer = ordering.getKiller(ply, index++);
+                    if (killer != hashMove && board.isLegalMove(killer, side)) {
+                        if (killer1 == Move.NO_MOVE) {
+                            killer1 = killer;
+                        } else {
+                            killer2 = killer;
+                        }
+                        return killer;
+                    }
+                    break;
+                case GENERATE_QUIETS:
+                    board.generateQuietMoves(side, moves);
+                    ordering.orderMoves(board, moves, hashMove, side, ply);
+                    index = 0;
+                    stage = QUIETS;
+                    break;
+                case QUIETS:
+                    if (index < moves.size()) {
+                        int move = moves.get(index++);
+                        if (move != hashMove && move != killer1 && move != killer2) {
+                            return move;
+                        }
+                        break;
+                    }
+                    stage = DONE;
+                    break;
+                default:
+                    return Move.NO_MOVE;
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perft counts the leaf nodes of the move tree to a fixed depth.
+ * The time it takes tells us how fast the move generator is, and the verify option checks the counts
+ * from the starting position against the ones in EXPECTED, so a change to the move generator can't change them
+ * without anyone noticing.
+ * One move is one whole turn, so a chain of jumps counts as one move.
+ * The counts match the published checkers perft up to depth 8 and are different after that, because here a man
+ * that is crowned in the middle of a chain keeps jumping as a king instead of stopping.
+ *
+ * @version 10/17/2026
+ */
+public class Perft {
+    //Leaf nodes from the starting position at depths 1 to 12, for the rules of this game.
+    public static final long[] EXPECTED = {7L, 49L, 302L, 1469L, 7361L, 36768L, 179740L, 845931L, 3963629L,
+            18391602L, 85153971L, 388066297L};
+    //If true, the last ply is counted from the size of the move list instead of making every move.
+    private boolean bulkCounting;
+    //Number of threads. The root moves are shared out between them.
+    private int threads;
+    //Table of subtree counts, indexed by the board key. Empty if there is no table.
+    //Each entry is stored as (key ^ data, data), so an entry half written by another thread never matches a key.
+    //data is the count shifted up 8 bits with the depth in the low 8 bits.
+    private long[] hashKeys = new long[0];
+    private long[] hashData = new long[0];
+
+    /**
+     * Constructor for Perft
+     *
+     * @param bulkCounting true to count the last ply from the size of the move list
+     * @param hashMB       size of the subtree count table in MB, 0 for no table
+     * @param threads      number of threads to use
+     */
+    public Perft(boolean bulkCounting, int hashMB, int threads) {
+        if (hashMB < 0 || threads < 1) {
+            throw new IllegalArgumentException("Error on Perft. Hash MB = " + hashMB + ", Threads = " + threads);
+        }
+        this.bulkCounting = bulkCounting;
+        this.threads = threads;
+        if (hashMB > 0) {
+            //Two longs per entry. Round down to a power of two so the key can be masked.
+            int entries = Integer.highestOneBit((int) Math.min((long) hashMB * 1024 * 1024 / 16, 1 << 30));
+            hashKeys = new long[entries];
+            hashData = new long[entries];
+        }
+    }
+
+    /**
+     * Perft main method
+     * Usage: Perft depth [divide] [bulk] [verify] [hash=MB] [threads=N]
+     *
+     * @param args args
+     * @throws IllegalStateException if verify is given and a count is not the expected one
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: Perft depth [divide] [bulk] [verify] [hash=MB] [threads=N]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        boolean divide = false;
+        boolean bulk = false;
+        boolean verify = false;
+        int hashMB = 0;
+        int threads = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("divide")) {
+                divide = true;
+            } else if (args[i].equals("bulk")) {
+                bulk = true;
+            } else if (args[i].equals("verify")) {
+                verify = true;
+            } else if (args[i].startsWith("hash=")) {
+                hashMB = Integer.parseInt(args[i].substring(5));
+            } else if (args[i].startsWith("threads=")) {
+                threads = Integer.parseInt(args[i].substring(8));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Perft perft = new Perft(bulk, hashMB, threads);
+        Board board = new Board();
+        for (int d = 1; d <= depth; d++) {
+            long timeStamp = System.nanoTime();
+            long nodes = (divide && d == depth) ? perft.divide(board, d) : perft.perft(board, d);
+            report(d, nodes, System.nanoTime() - timeStamp);
+            //Depths past the end of EXPECTED have no count to check against.
+            if (verify && d <= EXPECTED.length && nodes != EXPECTED[d - 1]) {
+                throw new IllegalStateException("Error on Perft. Depth " + d + " counted " + nodes
+                        + " nodes, expected " + EXPECTED[d - 1]);
+            }
+        }
+        if (verify) {
+            System.out.println("Verified the counts to depth " + Math.min(depth, EXPECTED.length));
+        }
+    }
+
+    /**
+     * Print the count and speed of one perft run.
+     *
+     * @param depth depth searched
+     * @param nodes leaf nodes counted
+     * @param nanos time taken in nanoseconds
+     */
+    private static void report(int depth, long nodes, long nanos) {
+        long ms = nanos / 1000000;
+        long nps = nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+        System.out.println("Depth " + depth + ": " + nodes + " nodes, " + ms + "ms, " + nps + " nodes/second");
+    }
+
+    /**
+     * Count the leaf nodes to a depth from a board. The side to move is the board's turn.
+     *
+     * @param board board to count from. It is not changed.
+     * @param depth depth to count to
+     * @return number of leaf nodes
+     */
+    public long perft(Board board, int depth) {
+        long total = 0;
+        for (long nodes : countRootMoves(board, depth, new MoveList())) {
+            total = total + nodes;
+        }
+        return depth == 0 ? 1 : total;
+    }
+
+    /**
+     * Count the leaf nodes to a depth from a board, and print the count under each root move.
+     * Comparing these against another move generator shows which move goes wrong.
+     *
+     * @param board board to count from. It is not changed.
+     * @param depth depth to count to
+     * @return number of leaf nodes
+     */
+    public long divide(Board board, int depth) {
+        MoveList rootMoves = new MoveList();
+        long[] counts = countRootMoves(board, depth, rootMoves);
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            System.out.println(Move.toString(rootMoves.get(i)) + ": " + counts[i]);
+            total = total + counts[i];
+        }
+        System.out.println("Moves: " + counts.length + ", Nodes: " + total);
+        return total;
+    }
+
+    /**
+     * Count the leaf nodes under every root move, using the threads if there is more than one.
+     *
+     * @param board     board to count from. It is not changed.
+     * @param depth     depth to count to. Must be at least 1 for there to be root moves.
+     * @param rootMoves list to fill with the root moves
+     * @return leaf nodes under each root move, in the same order as rootMoves
+     */
+    private long[] countRootMoves(final Board board, final int depth, MoveList rootMoves) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Error on Perft. Depth = " + depth);
+        }
+        rootMoves.clear();
+        if (depth == 0) {
+            return new long[0];
+        }
+        board.generateMoves(board.getTurn(), rootMoves);
+        long[] counts = new long[rootMoves.size()];
+
+        if (threads == 1) {
+            Board searchBoard = Board.clone(board);
+            MoveList[] moveLists = createMoveLists(depth);
+            for (int i = 0; i < rootMoves.size(); i++) {
+                long undo = searchBoard.applyMove(rootMoves.get(i), searchBoard.getTurn());
+                counts[i] = perft(searchBoard, depth - 1, moveLists);
+                searchBoard.undoMove(undo);
+            }
+            return counts;
+        }
+
+        //Each root move is a task with its own board and move lists.
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (int i = 0; i < rootMoves.size(); i++) {
+                final int move = rootMoves.get(i);
+                results.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        Board searchBoard = Board.clone(board);
+                        searchBoard.applyMove(move, searchBoard.getTurn());
+                        return perft(searchBoard, depth - 1, createMoveLists(depth));
+                    }
+                }));
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = results.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Perft was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Perft thread failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return counts;
+    }
+
+    /**
+     * Make a move list for each ply so the count doesn't make new lists at every node.
+     *
+     * @param depth depth to count to
+     * @return move lists indexed by remaining depth
+     */
+    private static MoveList[] createMoveLists(int depth) {
+        MoveList[] moveLists = new MoveList[depth + 1];
+        for (int i = 0; i <= depth; i++) {
+            moveLists[i] = new MoveList();
+        }
+        return moveLists;
+    }
+
+    /**
+     * Count the leaf nodes to a depth by making and undoing every move.
+     *
+     * @param board     board to count from. It is back to how it was when this returns.
+     * @param depth     remaining depth
+     * @param moveLists move lists indexed by remaining depth
+     * @return number of leaf nodes
+     */
+    private long perft(Board board, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        //Small subtrees are faster to count again than to look up.
+        boolean useHash = hashKeys.length > 0 && depth >= 2;
+        int index = 0;
+        if (useHash) {
+            long key = board.getKey();
+            index = (int) key & (hashKeys.length - 1);
+            long data = hashData[index];
+            if ((hashKeys[index] ^ data) == key && (data & 0xFF) == depth) {
+                return data >>> 8;
+            }
+        }
+
+        MoveList moves = moveLists[depth];
+        Player.Side side = board.getTurn();
+        board.generateMoves(side, moves);
+        long nodes = 0;
+        if (bulkCounting && depth == 1) {
+            nodes = moves.size();
+        } else {
+            for (int i = 0; i < moves.size(); i++) {
+                long undo = board.applyMove(moves.get(i), side);
+                nodes = nodes + perft(board, depth - 1, moveLists);
+                board.undoMove(undo);
+            }
+        }
+
+        if (useHash) {
+            long data = (nodes << 8) | depth;
+            hashData[index] = data;
+            hashKeys[index] = board.getKey() ^ data;
+        }
+        return nodes;
+    }
+
+    /*GETTERS AND SETTERS*/
+    public boolean isBulkCounting() {
+        return bulkCounting;
+    }
+
+    public void setBulkCounting(boolean bulkCounting) {
+        this.bulkCounting = bulkCounting;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Properties;
+
+/**
+ * ProbCut forward pruning for iterative deepening.
+ * The score of a deep search is close to a straight line of the score of a shallow search of the same board:
+ * deep = slope * shallow + intercept, give or take sigma. So a shallow search can tell us, with a known confidence,
+ * that a deep search would fail high or fail low, and the deep search can be skipped.
+ * <p>
+ * The line is fitted from self-play. Run "ProbCut selfplay games" to play games, log the shallow and deep scores
+ * of every board in them, and fit the pair of depths that predicts best. "ProbCut fit log" fits an existing log.
+ * Both write the fitted parameters to probcut.properties, which can be loaded and given to the A.I. with setProbCut.
+ *
+ * @version 10/17/2026
+ */
+public class ProbCut {
+    public static final String LOG_FILE = "probcut.log";
+    public static final String PARAMETERS_FILE = "probcut.properties";
+    //Pairs of shallow and deep depths the calibration tries.
+    private static final int[][] CANDIDATES = {{2, 4}, {2, 6}, {4, 6}, {4, 8}};
+    //How sure the prediction has to be before we prune, in standard deviations of the fit.
+    private static final double DEFAULT_THRESHOLD = 1.5;
+
+    private int shallowDepth;
+    private int deepDepth;
+    private double slope;
+    private double intercept;
+    private double sigma;
+    private double threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Default constructor. Uses parameters fitted from 2489 boards of 20 self-play games at 100ms a move.
+     * They are not validated: a 10 game match at 300ms a move against the same A.I. without ProbCut went
+     * 3 wins, 6 losses and 1 draw. ProbCut stays off unless it is given to the A.I., so fit and test your own.
+     */
+    public ProbCut() {
+        this(4, 6, 0.980, 0.23, 2.87);
+    }
+
+    /**
+     * Constructor for ProbCut
+     *
+     * @param shallowDepth depth of the shallow search
+     * @param deepDepth    depth of the deep search it predicts
+     * @param slope        slope of the fitted line
+     * @param intercept    intercept of the fitted line
+     * @param sigma        standard deviation of the deep scores around the line
+     */
+    public ProbCut(int shallowDepth, int deepDepth, double slope, double intercept, double sigma) {
+        if (shallowDepth < 1 || deepDepth <= shallowDepth || slope <= 0 || sigma < 0) {
+            throw new IllegalArgumentException("Error on ProbCut. Shallow Depth = " + shallowDepth
+                    + ", Deep Depth = " + deepDepth + ", Slope = " + slope + ", Sigma = " + sigma);
+        }
+        this.shallowDepth = shallowDepth;
+        this.deepDepth = deepDepth;
+        this.slope = slope;
+        this.intercept = intercept;
+        this.sigma = sigma;
+    }
+
+    /**
+     * ProbCut main method
+     * Usage: ProbCut selfplay games [timeMs] or ProbCut fit logFile
+     *
+     * @param args args
+     * @throws IOException if the log or the parameters can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("selfplay") || args[0].equals("fit"))) {
+            System.out.println("Usage: ProbCut selfplay games [timeMs] or ProbCut fit logFile");
+            return;
+        }
+        File log = new File(LOG_FILE);
+        if (args[0].equals("selfplay")) {
+            int games = Integer.parseInt(args[1]);
+            long timeLimit = args.length > 2 ? Long.parseLong(args[2]) : 100;
+            ArrayList<Board> boards = selfPlay(games, timeLimit);
+            System.out.println("Logging " + boards.size() + " boards to " + log);
+            writeLog(boards, log);
+        } else {
+            log = new File(args[1]);
+        }
+
+        ProbCut best = fitLog(log);
+        best.save(new File(PARAMETERS_FILE));
+        System.out.println("Best fit: " + best);
+        System.out.println("Saved to " + PARAMETERS_FILE);
+    }
+
+    /**
+     * Play games between two Harder A.I.s and keep every board they reach.
+     *
+     * @param games     number of games to play
+     * @param timeLimit time limit of each move in milliseconds
+     * @return boards from the games, with the side to move set
+     */
+    private static ArrayList<Board> selfPlay(int games, long timeLimit) {
+        ArrayList<Board> boards = new ArrayList<Board>();
+        for (int game = 0; game < games; game++) {
+            AI black = new AI(Player.Side.BLACK, 4, false);
+            AI red = new AI(Player.Side.RED, 4, false);
+            black.setTimeLimit(timeLimit);
+            red.setTimeLimit(timeLimit);
+            Board board = new Board();
+            ArrayList<Move> history = new ArrayList<Move>();
+            AI current = black;
+            //The same drawing rule as the bot matches in the Driver.
+            int movesMade = 0;
+            while (!board.isGameOver() && movesMade < 50) {
+                boards.add(Board.clone(board));
+                int pieces = board.getTotalRed() + board.getTotalBlack();
+                MoveResult result = current.makeMove(board, history);
+                if (!result.isCompleted()) {
+                    break;
+                }
+                movesMade = board.getTotalRed() + board.getTotalBlack() != pieces ? 0 : movesMade + 1;
+                current = current == black ? red : black;
+            }
+            System.out.println("Game " + (game + 1) + " of " + games + " done, " + boards.size() + " boards.");
+        }
+        return boards;
+    }
+
+    /**
+     * Search every board to every candidate depth and log the scores.
+     * Each line of the log is: shallow depth, deep depth, shallow score, deep score.
+     *
+     * @param boards boards to search
+     * @param log    file to write
+     * @throws IOException if the log can't be written
+     */
+    private static void writeLog(ArrayList<Board> boards, File log) throws IOException {
+        //Scores are from Black's side. Every search starts from an empty table so one depth can't leak into another.
+        AI searcher = new AI(Player.Side.BLACK, 4, false);
+        searcher.setTransTable(new TranspositionTable(1));
+        PrintWriter out = new PrintWriter(new FileWriter(log));
+        try {
+            for (Board board : boards) {
+                for (int[] candidate : CANDIDATES) {
+                    searcher.getTransTable().clear();
+                    int shallow = searcher.searchScore(board, candidate[0]);
+                    searcher.getTransTable().clear();
+                    int deep = searcher.searchScore(board, candidate[1]);
+                    out.println(candidate[0] + "," + candidate[1] + "," + shallow + "," + deep);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Fit a line for every pair of depths in a log and return the one that predicts best.
+     *
+     * @param log log written by writeLog
+     * @return fit with the highest correlation between the shallow and deep scores
+     * @throws IOException if the log can't be read
+     */
+    public static ProbCut fitLog(File log) throws IOException {
+        ArrayList<int[]> samples = new ArrayList<int[]>();
+        BufferedReader in = new BufferedReader(new FileReader(log));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                samples.add(new int[]{Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3])});
+            }
+        } finally {
+            in.close();
+        }
+
+        ProbCut best = null;
+        double bestCorrelation = Double.NEGATIVE_INFINITY;
+        for (int[] candidate : CANDIDATES) {
+            //Least squares fit of deep = slope * shallow + intercept.
+            int count = 0;
+            double sumX = 0;
+            double sumY = 0;
+            double sumXX = 0;
+            double sumXY = 0;
+            double sumYY = 0;
+            for (int[] sample : samples) {
+                if (sample[0] == candidate[0] && sample[1] == candidate[1]) {
+                    count++;
+                    sumX += sample[2];
+                    sumY += sample[3];
+                    sumXX += (double) sample[2] * sample[2];
+                    sumXY += (double) sample[2] * sample[3];
+                    sumYY += (double) sample[3] * sample[3];
+                }
+            }
+            double varX = count * sumXX - sumX * sumX;
+            double varY = count * sumYY - sumY * sumY;
+            if (count < 2 || varX <= 0 || varY <= 0) {
+                continue;
+            }
+            double slope = (count * sumXY - sumX * sumY) / varX;
+            double intercept = (sumY - slope * sumX) / count;
+            double correlation = (count * sumXY - sumX * sumY) / Math.sqrt(varX * varY);
+            //Spread of the deep scores around the line.
+            double residuals = 0;
+            for (int[] sample : samples) {
+                if (sample[0] == candidate[0] && sample[1] == candidate[1]) {
+                    double error = sample[3] - (slope * sample[2] + intercept);
+                    residuals += error * error;
+                }
+            }
+            double sigma = Math.sqrt(residuals / count);
+            System.out.println("Depth " + candidate[0] + " -> " + candidate[1] + ": " + count + " samples, slope "
+                    + slope + ", intercept " + intercept + ", sigma " + sigma + ", correlation " + correlation);
+            if (slope > 0 && correlation > bestCorrelation) {
+                bestCorrelation = correlation;
+                best = new ProbCut(candidate[0], candidate[1], slope, intercept, sigma);
+            }
+        }
+        if (best == null) {
+            throw new IllegalArgumentException("Error on ProbCut. Not enough samples in " + log);
+        }
+        return best;
+    }
+
+    /**
+     * Load fitted parameters.
+     *
+     * @param file file written by save
+     * @return ProbCut with the parameters
+     * @throws IOException if the file can't be read
+     */
+    public static ProbCut load(File file) throws IOException {
+        Properties properties = new Properties();
+        FileReader in = new FileReader(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        ProbCut probCut = new ProbCut(Integer.parseInt(properties.getProperty("shallowDepth")),
+                Integer.parseInt(properties.getProperty("deepDepth")),
+                Double.parseDouble(properties.getProperty("slope")),
+                Double.parseDouble(properties.getProperty("intercept")),
+                Double.parseDouble(properties.getProperty("sigma")));
+        probCut.setThreshold(Double.parseDouble(properties.getProperty("threshold",
+                String.valueOf(DEFAULT_THRESHOLD))));
+        return probCut;
+    }
+
+    /**
+     * Save the parameters.
+     *
+     * @param file file to write
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("shallowDepth", String.valueOf(shallowDepth));
+        properties.setProperty("deepDepth", String.valueOf(deepDepth));
+        properties.setProperty("slope", String.valueOf(slope));
+        properties.setProperty("intercept", String.valueOf(intercept));
+        properties.setProperty("sigma", String.valueOf(sigma));
+        properties.setProperty("threshold", String.valueOf(threshold));
+        FileWriter out = new FileWriter(file);
+        try {
+            properties.store(out, "ProbCut parameters");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Get the shallow score at or above which the deep score is very likely at least beta.
+     *
+     * @param beta beta value
+     * @return shallow search bound
+     */
+    public int upperBound(int beta) {
+        return (int) Math.ceil((beta - intercept + threshold * sigma) / slope);
+    }
+
+    /**
+     * Get the shallow score at or below which the deep score is very likely at most alpha.
+     *
+     * @param alpha alpha value
+     * @return shallow search bound
+     */
+    public int lowerBound(int alpha) {
+        return (int) Math.floor((alpha - intercept - threshold * sigma) / slope);
+    }
+
+    /**
+     * Get how much shallower the shallow search is than the deep search.
+     *
+     * @return difference in depth
+     */
+    public int getReduction() {
+        return deepDepth - shallowDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + shallowDepth + " -> " + deepDepth + ", deep = " + slope + " * shallow + " + intercept
+                + ", sigma " + sigma + ", threshold " + threshold;
+    }
+
+    /*GETTERS AND SETTERS*/
+    public int getShallowDepth() {
+        return shallowDepth;
+    }
+
+    public int getDeepDepth() {
+        return deepDepth;
+    }
+
+    public double getSlope() {
+        return slope;
+    }
+
+    public double getIntercept() {
+        return intercept;
+    }
+
+    public double getSigma() {
+        return sigma;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Statistics of an iterative deepening search, taken at the end of one iteration.
+ * The counts are for the whole search up to the end of the iteration, from every thread that searched it.
+ * Every thread counts into its own A.I., so counting costs nothing more than adding one to a field,
+ * and the counts are only added up when an iteration is done.
+ *
+ * @version 10/17/2026
+ */
+public class SearchStats {
+    private int depth;
+    //Time the iteration took, and the time since the search started, in milliseconds.
+    private long time;
+    private long totalTime;
+    //Nodes searched, including the quiescence nodes, and the nodes searched by this iteration alone.
+    private long nodes;
+    private long quiescenceNodes;
+    private long iterationNodes;
+    //Beta cut offs, and how many of them came from the first move searched.
+    private long betaCutoffs;
+    private long firstMoveCutoffs;
+    //Transposition table probes, probes that found the board, and stores.
+    private long tableProbes;
+    private long tableHits;
+    private long tableStores;
+    //Nodes of this iteration over the nodes of the one before it, 0 for the first iteration.
+    private double branchingFactor;
+
+    /**
+     * Constructor for the SearchStats
+     *
+     * @param depth     depth of the iteration
+     * @param time      time the iteration took, in milliseconds
+     * @param totalTime time since the search started, in milliseconds
+     */
+    public SearchStats(int depth, long time, long totalTime) {
+        this.depth = depth;
+        this.time = time;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Add the counts of one search thread.
+     *
+     * @param nodes            nodes searched, including the quiescence nodes
+     * @param quiescenceNodes  quiescence nodes searched
+     * @param betaCutoffs      beta cut offs
+     * @param firstMoveCutoffs beta cut offs on the first move searched
+     * @param tableProbes      transposition table probes
+     * @param tableHits        transposition table probes that found the board
+     * @param tableStores      transposition table stores
+     */
+    public void addCounts(long nodes, long quiescenceNodes, long betaCutoffs, long firstMoveCutoffs,
+                          long tableProbes, long tableHits, long tableStores) {
+        this.nodes = this.nodes + nodes;
+        this.quiescenceNodes = this.quiescenceNodes + quiescenceNodes;
+        this.betaCutoffs = this.betaCutoffs + betaCutoffs;
+        this.firstMoveCutoffs = this.firstMoveCutoffs + firstMoveCutoffs;
+        this.tableProbes = this.tableProbes + tableProbes;
+        this.tableHits = this.tableHits + tableHits;
+        this.tableStores = this.tableStores + tableStores;
+    }
+
+    /**
+     * Work out the nodes of this iteration alone and the branching factor, once every count has been added.
+     *
+     * @param previous statistics of the iteration before this one, or null if this is the first
+     */
+    public void finish(SearchStats previous) {
+        iterationNodes = previous == null ? nodes : nodes - previous.nodes;
+        if (previous != null && previous.iterationNodes > 0) {
+            branchingFactor = (double) iterationNodes / previous.iterationNodes;
+        }
+    }
+
+    /**
+     * Get the nodes searched each second, over the whole search so far.
+     *
+     * @return nodes per second
+     */
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, totalTime);
+    }
+
+    /**
+     * Get the share of the beta cut offs that came from the first move. The closer to 1, the better the ordering.
+     *
+     * @return first move cut off rate, 0 to 1
+     */
+    public double getFirstMoveCutoffRate() {
+        return betaCutoffs == 0 ? 0 : (double) firstMoveCutoffs / betaCutoffs;
+    }
+
+    /**
+     * Get the share of the transposition table probes that found the board.
+     *
+     * @return hit rate, 0 to 1
+     */
+    public double getTableHitRate() {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Depth %d: %d ms (%d ms total), %d nodes (%d quiescence), %d nps, "
+                        + "%d cut offs (%.1f%% first move), table %d probes %d hits (%.1f%%) %d stores, "
+                        + "branching factor %.2f",
+                depth, time, totalTime, nodes, quiescenceNodes, getNodesPerSecond(), betaCutoffs,
+                getFirstMoveCutoffRate() * 100, tableProbes, tableHits, getTableHitRate() * 100, tableStores,
+                branchingFactor);
+    }
+
+    /*GETTERS AND SETTERS*/
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    public long getIterationNodes() {
+        return iterationNodes;
+    }
+
+    public long getBetaCutoffs() {
+        return betaCutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    public long getTableProbes() {
+        return tableProbes;
+    }
+
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    public long getTableStores() {
+        return tableStores;
+    }
+
+    public double getBranchingFactor() {
+        return branchingFactor;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * A game clock for the A.I., and the budget it gives each move.
+ * The clock starts with a total time. It can add an increment after every move, and it can add the total time
+ * again after every so many moves (moves to go). With neither, it is sudden death.
+ * <p>
+ * Each move gets a target time and a maximum time. The search normally stops near the target,
+ * stops sooner when the move is easy, and can go over the target when the score drops, but never past the maximum.
+ *
+ * @version 10/17/2026
+ */
+public class TimeControl {
+    //In sudden death we don't know how many moves are left, so we plan for this many.
+    private static final int SUDDEN_DEATH_MOVES = 30;
+    //Time kept back on every move for everything that isn't the search, in milliseconds.
+    private static final long MOVE_OVERHEAD = 50;
+    //The maximum time of a move is this many times its target, and never more than this fraction of the clock.
+    private static final int MAX_TARGET_MULTIPLE = 4;
+    private static final int MAX_CLOCK_DIVISOR = 3;
+    //No move gets less than this, even if the clock is nearly out.
+    private static final long MIN_MOVE_TIME = 10;
+
+    private long totalTime;
+    private long increment;
+    private int movesPerPeriod;
+    //Time left on the clock, and moves left until the total time is added again (0 if it never is).
+    private long remainingTime;
+    private int movesToGo;
+
+    /**
+     * Constructor for a sudden death clock
+     *
+     * @param totalTime time for the whole game, in milliseconds
+     */
+    public TimeControl(long totalTime) {
+        this(totalTime, 0, 0);
+    }
+
+    /**
+     * Constructor for the TimeControl
+     *
+     * @param totalTime      time on the clock at the start, in milliseconds
+     * @param increment      time added after every move, in milliseconds
+     * @param movesPerPeriod number of moves after which totalTime is added again, 0 if it never is
+     */
+    public TimeControl(long totalTime, long increment, int movesPerPeriod) {
+        if (totalTime <= 0 || increment < 0 || movesPerPeriod < 0) {
+            throw new IllegalArgumentException("Error on TimeControl. Total Time = " + totalTime
+                    + ", Increment = " + increment + ", Moves Per Period = " + movesPerPeriod);
+        }
+        this.totalTime = totalTime;
+        this.increment = increment;
+        this.movesPerPeriod = movesPerPeriod;
+        this.remainingTime = totalTime;
+        this.movesToGo = movesPerPeriod;
+    }
+
+    /**
+     * Get the time the next move should take. The search stops around here unless the move is hard.
+     *
+     * @return target time for the move, in milliseconds
+     */
+    public long getTargetTime() {
+        return Math.max(MIN_MOVE_TIME, Math.min(shareOfClock(), getMaximumTime()));
+    }
+
+    /**
+     * Get the most time the next move may take. The search is stopped here whatever happens.
+     *
+     * @return maximum time for the move, in milliseconds
+     */
+    public long getMaximumTime() {
+        long maximum = Math.min(shareOfClock() * MAX_TARGET_MULTIPLE, remainingTime / MAX_CLOCK_DIVISOR);
+        //On the last move of a period the rest of the period's time can all be used.
+        if (movesToGo == 1) {
+            maximum = remainingTime - MOVE_OVERHEAD;
+        }
+        return Math.max(MIN_MOVE_TIME, maximum);
+    }
+
+    /**
+     * Split the time left on the clock evenly over the moves left.
+     *
+     * @return even share of the clock for one move, in milliseconds
+     */
+    private long shareOfClock() {
+        int movesLeft = movesToGo > 0 ? movesToGo : SUDDEN_DEATH_MOVES;
+        //The increment comes back after the move, so it can be spent now.
+        return (remainingTime - MOVE_OVERHEAD) / movesLeft + increment;
+    }
+
+    /**
+     * Take the time a move used off the clock, and add the increment and the next period's time.
+     *
+     * @param elapsed time the move took, in milliseconds
+     */
+    public void moveMade(long elapsed) {
+        remainingTime = remainingTime - elapsed + increment;
+        if (movesPerPeriod > 0) {
+            movesToGo--;
+            if (movesToGo == 0) {
+                remainingTime = remainingTime + totalTime;
+                movesToGo = movesPerPeriod;
+            }
+        }
+    }
+
+    /*GETTERS AND SETTERS*/
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public long getIncrement() {
+        return increment;
+    }
+
+    public int getMovesPerPeriod() {
+        return movesPerPeriod;
+    }
+
+    public long getRemainingTime() {
+        return remainingTime;
+    }
+
+    /**
+     * Set the time left on the clock, for when the real clock is kept somewhere else.
+     *
+     * @param remainingTime time left, in milliseconds
+     */
+    public void setRemainingTime(long remainingTime) {
+        this.remainingTime = remainingTime;
+    }
+
+    public int getMovesToGo() {
+        return movesToGo;
+    }
+
+    public void setMovesToGo(int movesToGo) {
+        this.movesToGo = movesToGo;
+    }
+}
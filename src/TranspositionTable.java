@@ -0,0 +1,342 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Transposition table used by iterative deepening.
+ * The table is a fixed number of buckets that is allocated once, so it never uses more memory than it was given.
+ * Each entry is two longs: the best move, score, depth, bound and age packed together as the data,
+ * and the board key XORed with the data.
+ * Threads and programs share the table without locks. If one writes an entry while another reads it,
+ * the reader can see the key of one entry with the data of another. The XOR means that never matches the key,
+ * so a half written entry is a miss instead of a wrong score or an illegal move.
+ * The entries are kept outside the Java heap, so a big table doesn't slow down garbage collection.
+ * A table can also be backed by a file. Every program that maps the same file shares the same table,
+ * and a table in a file is still there the next time the program runs.
+ * Scores are stored from the side to move, so A.I.s of both sides can share a table. A.I.s that score boards with
+ * different heuristics can't, so a table is claimed by the first heuristic that uses it (see claim).
+ * <p>
+ * Every bucket has two entries. The first keeps the deepest search of the current move, even when the same board
+ * is searched again less deeply. The second is always replaced, so new boards still get stored when the first entry
+ * is worth keeping. A probe finds the first entry before the second, so it gets the deeper result.
+ * Entries from earlier moves are kept until they are replaced, so the table carries over from one move to the next.
+ *
+ * @version 10/17/2026
+ */
+public class TranspositionTable {
+    //Bound types. A score is exact, at least (LOWER) or at most (UPPER) the real score of the board.
+    //0 is left for empty entries.
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    //Layout of the packed entry data. Bits 0-31 are the move.
+    private static final int SCORE_SHIFT = 32;
+    private static final int SCORE_BITS = 20;
+    private static final int DEPTH_SHIFT = 52;
+    private static final int MAX_DEPTH = 127;
+    private static final int BOUND_SHIFT = 59;
+    private static final int AGE_SHIFT = 61;
+    private static final int AGE_MASK = 7;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    //Bytes used by one entry: the key and the data.
+    private static final int ENTRY_BYTES = 16;
+    //Longs used by one bucket.
+    private static final int BUCKET_LONGS = ENTRY_BYTES / 8 * ENTRIES_PER_BUCKET;
+    //A buffer can only hold 2 GB, so the table is split into 1 GB segments.
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final long MAX_BUCKETS = 1L << 32;
+    //A table file starts with a header: a format number, the key of the starting board, the number of buckets
+    //and the heuristic the scores were made with (0 until one claims it).
+    //The starting board key checks that the file was written with the same Zobrist keys.
+    private static final long FILE_FORMAT = 0x434B5456L;
+    private static final int EVALUATION_OFFSET = 24;
+    private static final int HEADER_BYTES = 64;
+
+    private LongBuffer[] segments;
+    private long bucketMask;
+    private MappedByteBuffer[] mappedBuffers = new MappedByteBuffer[0];
+    //Age of the current search. Entries with a different age are from an earlier move.
+    private int age;
+    //Heuristic the scores of a table in memory were made with, 0 until one claims it.
+    //A table in a file keeps it in its header instead, so every program sees it.
+    private long evaluation;
+
+    /**
+     * Constructor for the transposition table
+     *
+     * @param megabytes size of the table in MB. Rounded down to a power of two number of buckets.
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Error on TranspositionTable. Size MB = " + megabytes);
+        }
+        long buckets = bucketsFor(megabytes);
+        segments = new LongBuffer[segmentCount(buckets)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect((int) (segmentLongs(buckets, i) * 8))
+                    .order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * Constructor for a transposition table that is backed by a file.
+     * If the file already holds a table, that table is used as it is, whatever its size.
+     * Otherwise the file is made into an empty table of the given size.
+     *
+     * @param file      file to map
+     * @param megabytes size of the table in MB, if a new table is made
+     * @throws IOException if the file cannot be read, written or mapped
+     */
+    public TranspositionTable(File file, int megabytes) throws IOException {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Error on TranspositionTable. Size MB = " + megabytes);
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.nativeOrder());
+            long startKey = new Board().getKey();
+            long buckets = header.getLong(16);
+            boolean valid = header.getLong(0) == FILE_FORMAT && header.getLong(8) == startKey
+                    && Long.bitCount(buckets) == 1 && buckets <= MAX_BUCKETS
+                    && raf.length() >= HEADER_BYTES + buckets * BUCKET_LONGS * 8;
+            if (!valid) {
+                buckets = bucketsFor(megabytes);
+                raf.setLength(HEADER_BYTES + buckets * BUCKET_LONGS * 8);
+            }
+
+            segments = new LongBuffer[segmentCount(buckets)];
+            mappedBuffers = new MappedByteBuffer[segments.length + 1];
+            mappedBuffers[0] = header;
+            long position = HEADER_BYTES;
+            for (int i = 0; i < segments.length; i++) {
+                long bytes = segmentLongs(buckets, i) * 8;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+                buffer.order(ByteOrder.nativeOrder());
+                mappedBuffers[i + 1] = buffer;
+                segments[i] = buffer.asLongBuffer();
+                position = position + bytes;
+            }
+            bucketMask = buckets - 1;
+
+            //A new table. Clear out whatever was in the file and write the header last.
+            if (!valid) {
+                clear();
+                header.putLong(0, FILE_FORMAT);
+                header.putLong(8, startKey);
+                header.putLong(16, buckets);
+                header.putLong(EVALUATION_OFFSET, 0);
+            }
+        } finally {
+            //The mapping stays valid after the file is closed.
+            raf.close();
+        }
+    }
+
+    /**
+     * Get the number of buckets a table of a size has.
+     *
+     * @param megabytes size of the table in MB
+     * @return number of buckets, a power of two
+     */
+    private static long bucketsFor(int megabytes) {
+        long buckets = (long) megabytes * 1024 * 1024 / (ENTRY_BYTES * ENTRIES_PER_BUCKET);
+        return Long.highestOneBit(Math.min(buckets, MAX_BUCKETS));
+    }
+
+    /**
+     * Get the number of segments needed for a number of buckets.
+     *
+     * @param buckets number of buckets
+     * @return number of segments
+     */
+    private static int segmentCount(long buckets) {
+        return (int) ((buckets * BUCKET_LONGS + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    }
+
+    /**
+     * Get the number of longs in one segment.
+     *
+     * @param buckets number of buckets in the table
+     * @param segment index of the segment
+     * @return number of longs in the segment
+     */
+    private static long segmentLongs(long buckets, int segment) {
+        return Math.min(buckets * BUCKET_LONGS - ((long) segment << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT);
+    }
+
+    /**
+     * Read a long from the table.
+     *
+     * @param index index of the long
+     * @return value of the long
+     */
+    private long get(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+
+    /**
+     * Write a long to the table.
+     *
+     * @param index index of the long
+     * @param value value to write
+     */
+    private void put(long index, long value) {
+        segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Start a new search. Entries stored before this are from an earlier move and are the first to be replaced.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Claim the table for the heuristic of an A.I. before it searches with it.
+     * An unclaimed table is taken. A table claimed by another heuristic is refused, in memory or in a file,
+     * because another A.I. or program may still be searching with those scores.
+     *
+     * @param heuristic number of the heuristic the A.I. scores boards with, more than 0
+     * @throws IllegalArgumentException if another heuristic has claimed the table
+     */
+    public synchronized void claim(int heuristic) {
+        MappedByteBuffer header = mappedBuffers.length > 0 ? mappedBuffers[0] : null;
+        long claimed = header != null ? header.getLong(EVALUATION_OFFSET) : evaluation;
+        if (claimed == heuristic) {
+            return;
+        }
+        if (claimed != 0) {
+            throw new IllegalArgumentException("Error on claim. The table holds scores of heuristic "
+                    + claimed + ", Heuristic = " + heuristic);
+        }
+        if (header != null) {
+            header.putLong(EVALUATION_OFFSET, heuristic);
+        } else {
+            evaluation = heuristic;
+        }
+    }
+
+    /**
+     * Remove every entry from the table.
+     */
+    public void clear() {
+        for (LongBuffer segment : segments) {
+            for (int i = 0; i < segment.capacity(); i++) {
+                segment.put(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Write a table that is backed by a file out to the disk.
+     * Other programs that map the file see the entries straight away, this is only needed to keep them safe.
+     */
+    public void flush() {
+        for (MappedByteBuffer buffer : mappedBuffers) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Look up a board in the table.
+     *
+     * @param key key of the board
+     * @return packed entry data, or 0 if the board is not in the table. Use the static getters to read it.
+     */
+    public long probe(long key) {
+        long index = (key & bucketMask) * BUCKET_LONGS;
+        for (long i = index; i < index + BUCKET_LONGS; i += 2) {
+            long entry = get(i + 1);
+            if ((get(i) ^ entry) == key && entry != 0) {
+                return entry;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Store a searched board in the table.
+     *
+     * @param key   key of the board
+     * @param move  best packed move of the board, or Move.NO_MOVE to keep the move that is already stored
+     * @param score score of the board
+     * @param depth depth the board was searched to
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long index = (key & bucketMask) * BUCKET_LONGS;
+
+        //The first entry is replaced by a search that is at least as deep, or an old entry.
+        //Anything else goes in the second entry, even a shallower search of the same board,
+        //so a quick search of a board (like ProbCut's) never throws away the deep result we have for it.
+        long first = get(index + 1);
+        if (getDepth(first) > depth && getAge(first) == age) {
+            index = index + 2;
+        }
+        long old = get(index + 1);
+        if (move == Move.NO_MOVE && (get(index) ^ old) == key) {
+            move = getMove(old);
+        }
+        long entry = pack(move, score, depth, bound, age);
+        put(index, key ^ entry);
+        put(index + 1, entry);
+    }
+
+    /**
+     * Pack an entry into a long.
+     *
+     * @param move  packed move
+     * @param score score
+     * @param depth depth
+     * @param bound bound type
+     * @param age   age
+     * @return packed entry data
+     */
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        return (move & 0xFFFFFFFFL)
+                | ((score & ((1L << SCORE_BITS) - 1)) << SCORE_SHIFT)
+                | ((long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+    }
+
+    public static int getMove(long entry) {
+        return (int) entry;
+    }
+
+    public static int getScore(long entry) {
+        //Shift the sign bit of the score up to the top, then back down to sign extend it.
+        return (int) (entry << (64 - SCORE_SHIFT - SCORE_BITS) >> (64 - SCORE_BITS));
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    public static int getBound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int getAge(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /*GETTERS AND SETTERS*/
+    public int getAge() {
+        return age;
+    }
+
+    public long getSize() {
+        return (bucketMask + 1) * ENTRIES_PER_BUCKET;
+    }
+}